@@ -0,0 +1,125 @@
+package org.vectora.benchmarks;
+
+import org.vectora.server.AppConfig;
+import org.vectora.server.LuceneIndexer;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End-to-end ingest: runs {@link LuceneIndexer#buildIndex} against a {@link SyntheticDatabase}
+ * several times into a fresh index directory and reports rows/sec, source bytes/sec, GC time and
+ * final index size per run, plus the median. A whole ingest is one measurement, so this is a
+ * plain main rather than a JMH benchmark; run it with a fixed heap ({@code -Xms}={@code -Xmx}) so
+ * GC numbers are comparable.
+ *
+ * <pre>
+ * java -Xms2g -Xmx2g -cp benchmarks/target/benchmarks.jar org.vectora.benchmarks.IngestBenchmark \
+ *     --tables 8 --rows 50000 --columns 'varchar(40)*6,text(2000)*2,int*4,decimal*2,datetime' --threads 4
+ * </pre>
+ */
+public final class IngestBenchmark {
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "tables", "8",
+            "rows", "20000",
+            "columns", "varchar(40)*6,text(1000)*2,int*4,decimal*2,datetime,boolean",
+            "threads", "1",
+            "runs", "3",
+            "dir", System.getProperty("java.io.tmpdir") + "/vectora-ingest-bench");
+
+    private IngestBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        Path dir = Path.of(options.get("dir"));
+        int threads = Integer.parseInt(options.get("threads"));
+        int runs = Integer.parseInt(options.get("runs"));
+
+        long generateStart = System.nanoTime();
+        SyntheticDatabase.Source source = new SyntheticDatabase(
+                Integer.parseInt(options.get("tables")),
+                Integer.parseInt(options.get("rows")),
+                SyntheticDatabase.parseColumns(options.get("columns"))).ensure(dir.resolve("source"));
+        System.out.printf("source: %,d rows, %.1f MB (ready in %d ms)%n", source.rows(), source.bytes() / 1e6,
+                (System.nanoTime() - generateStart) / 1_000_000);
+
+        Path indexPath = dir.resolve("index");
+        Path configPath = dir.resolve("config.yaml");
+        Files.writeString(configPath, """
+                lucene:
+                  index_path: %s
+                  ingest_threads: %d
+                mysql:
+                  url: "%s"
+                  username: sa
+                  password: ""
+                """.formatted(indexPath.toAbsolutePath(), threads, source.url()));
+        AppConfig config = AppConfig.load(configPath);
+
+        List<Double> rates = new ArrayList<>();
+        System.out.printf("%-4s %10s %12s %10s %9s %8s %10s%n",
+                "run", "seconds", "rows/s", "MB/s", "gc ms", "gc n", "index MB");
+        for (int run = 1; run <= runs; run++) {
+            SyntheticIndex.delete(indexPath);
+            System.gc();
+            long gcTimeBefore = gcTime();
+            long gcCountBefore = gcCount();
+            long start = System.nanoTime();
+            new LuceneIndexer().buildIndex(config);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long gcMillis = gcTime() - gcTimeBefore;
+            long gcRuns = gcCount() - gcCountBefore;
+            double rate = source.rows() / seconds;
+            rates.add(rate);
+            System.out.printf("%-4d %10.2f %12.0f %10.1f %9d %8d %10.1f%n", run, seconds, rate,
+                    source.bytes() / 1e6 / seconds, gcMillis, gcRuns, size(indexPath) / 1e6);
+        }
+        rates.sort(null);
+        System.out.printf("median: %.0f rows/s (threads: %d)%n", rates.get(rates.size() / 2), threads);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got: " + arg);
+            }
+            String name = arg.substring(2);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + "; known: " + DEFAULTS.keySet());
+            }
+            options.put(name, args[++i]);
+        }
+        return options;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long size(Path root) throws Exception {
+        try (var walk = Files.walk(root)) {
+            return walk.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.vectora.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vectora.server.AppConfig;
+import org.vectora.server.LuceneService;
+import org.vectora.server.LuceneService.SearchRequest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LuceneService#search} by query class and {@link LuceneService#lookup} by primary key
+ * against a {@link SyntheticIndex}. Each invocation picks its query at random from a fixed pool,
+ * so results are not served from a single hot posting list. Run with {@code -prof gc} for the
+ * allocation rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final int LIMIT = 20;
+    private static final int POOL = 64;
+
+    @Param("20")
+    public int tables;
+
+    @Param("5000")
+    public int rowsPerTable;
+
+    @Param("30")
+    public int columns;
+
+    @Param("24")
+    public int textWords;
+
+    private LuceneService service;
+    private SearchRequest[] term;
+    private SearchRequest[] termInTable;
+    private SearchRequest[] phrase;
+    private SearchRequest[] wildcard;
+    private SearchRequest[] timeRange;
+    private String[] lookupTables;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticIndex index = new SyntheticIndex(tables, rowsPerTable, columns, textWords);
+        service = new LuceneService(AppConfig.LuceneConfig.defaults(index.ensure().toString()));
+
+        term = new SearchRequest[POOL];
+        termInTable = new SearchRequest[POOL];
+        phrase = new SearchRequest[POOL];
+        wildcard = new SearchRequest[POOL];
+        timeRange = new SearchRequest[POOL];
+        lookupTables = new String[tables];
+        for (int t = 0; t < tables; t++) {
+            lookupTables[t] = SyntheticIndex.tableName(t);
+        }
+        long span = Duration.between(SyntheticIndex.START, SyntheticIndex.END).toMillis();
+        long window = Duration.ofDays(30).toMillis();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < POOL; i++) {
+            String word = index.word(i * 7);
+            String table = lookupTables[i % tables];
+            term[i] = new SearchRequest(word, null, null, null, LIMIT);
+            termInTable[i] = new SearchRequest(word, table, null, null, LIMIT);
+            phrase[i] = new SearchRequest("\"" + index.word(i % 8) + " " + index.word(i / 8) + "\"",
+                    null, null, null, LIMIT);
+            wildcard[i] = new SearchRequest(word.substring(0, 3) + "*", null, null, null, LIMIT);
+            long from = SyntheticIndex.START.toEpochMilli() + random.nextLong(span - window);
+            timeRange[i] = new SearchRequest(index.word(i), null, from, from + window, LIMIT);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        service.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> termSearch() throws Exception {
+        return service.search(pick(term));
+    }
+
+    @Benchmark
+    public Map<String, Object> termSearchInTable() throws Exception {
+        return service.search(pick(termInTable));
+    }
+
+    @Benchmark
+    public Map<String, Object> phraseSearch() throws Exception {
+        return service.search(pick(phrase));
+    }
+
+    @Benchmark
+    public Map<String, Object> wildcardSearch() throws Exception {
+        return service.search(pick(wildcard));
+    }
+
+    @Benchmark
+    public Map<String, Object> timeRangeSearch() throws Exception {
+        return service.search(pick(timeRange));
+    }
+
+    @Benchmark
+    public Optional<Map<String, Object>> lookup() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String table = lookupTables[random.nextInt(lookupTables.length)];
+        return service.lookup(table, Integer.toString(1 + random.nextInt(rowsPerTable)));
+    }
+
+    private static SearchRequest pick(SearchRequest[] pool) {
+        return pool[ThreadLocalRandom.current().nextInt(pool.length)];
+    }
+}
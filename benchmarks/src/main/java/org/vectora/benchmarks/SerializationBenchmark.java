@@ -0,0 +1,66 @@
+package org.vectora.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.vectora.server.AppConfig;
+import org.vectora.server.CompactResultEncoder;
+import org.vectora.server.JsonUtil;
+import org.vectora.server.LuceneService;
+import org.vectora.server.LuceneService.SearchRequest;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding one search response the way the servers send it: the JSON body of {@code /search}
+ * and the compact MCP result format. The response is captured once from a
+ * {@link SyntheticIndex}, so only serialization is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"10", "100"})
+    public int limit;
+
+    @Param("30")
+    public int columns;
+
+    private Map<String, Object> response;
+    private SearchRequest request;
+    private CompactResultEncoder.Options options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticIndex index = new SyntheticIndex(4, 2000, columns, 24);
+        request = new SearchRequest(index.word(0), null, null, null, limit);
+        try (LuceneService service = new LuceneService(AppConfig.LuceneConfig.defaults(index.ensure().toString()))) {
+            response = service.search(request);
+        }
+        options = new CompactResultEncoder.Options(Integer.MAX_VALUE, 200);
+    }
+
+    @Benchmark
+    public byte[] json() throws Exception {
+        return JsonUtil.MAPPER.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public String compact() throws Exception {
+        return CompactResultEncoder.encode(response, request, options);
+    }
+}
@@ -0,0 +1,222 @@
+package org.vectora.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A file-backed H2 database in MySQL mode filled with synthetic tables, as a local stand-in for
+ * the MySQL source {@code LuceneIndexer} reads. Every table has a {@code BIGINT} primary key
+ * {@code id} and a {@code created_at DATETIME}, followed by the columns of a {@link #parseColumns
+ * column spec}. Text is drawn from a skewed vocabulary so the index gets realistic term
+ * frequencies.
+ *
+ * <p>The database is generated once per shape and reused, so repeated ingest runs only pay for
+ * indexing.
+ */
+public final class SyntheticDatabase {
+
+    private static final Pattern COLUMN = Pattern.compile("(\\w+)(?:\\((\\d+)\\))?(?:\\*(\\d+))?");
+    private static final Instant END = Instant.parse("2025-01-01T00:00:00Z");
+    private static final long SPAN = Duration.ofDays(730).toMillis();
+    private static final int BATCH = 1000;
+
+    /**
+     * One generated column type. {@code width} is the maximum length of {@code varchar} and
+     * {@code text} values and is ignored for the other types.
+     */
+    public record ColumnSpec(String type, int width) {
+
+        String sqlType() {
+            return switch (type) {
+                case "varchar" -> "VARCHAR(" + width + ")";
+                // H2 maps TEXT to CLOB, which its driver returns as a Clob; Connector/J returns
+                // MySQL TEXT as a String, which an unbounded VARCHAR reproduces.
+                case "text" -> "VARCHAR";
+                case "int" -> "INT";
+                case "bigint" -> "BIGINT";
+                case "decimal" -> "DECIMAL(12,2)";
+                case "double" -> "DOUBLE";
+                case "datetime" -> "DATETIME";
+                case "date" -> "DATE";
+                case "boolean" -> "BOOLEAN";
+                default -> throw new IllegalArgumentException("Unknown column type: " + type);
+            };
+        }
+    }
+
+    /**
+     * The generated database: its JDBC URL, total rows and the bytes of source data it holds
+     * (UTF-8 length of text values, 8 bytes per numeric or temporal value).
+     */
+    public record Source(String url, long rows, long bytes) {}
+
+    private final int tables;
+    private final int rowsPerTable;
+    private final List<ColumnSpec> columns;
+    private final String[] vocabulary;
+
+    public SyntheticDatabase(int tables, int rowsPerTable, List<ColumnSpec> columns) {
+        this.tables = tables;
+        this.rowsPerTable = rowsPerTable;
+        this.columns = List.copyOf(columns);
+        this.vocabulary = SyntheticIndex.vocabulary(4000).toArray(String[]::new);
+    }
+
+    /**
+     * Parses a spec such as {@code varchar(40)*6,text(2000)*2,int*4,decimal*2,datetime}: comma
+     * separated {@code type}, optional {@code (width)} and optional {@code *count}.
+     */
+    public static List<ColumnSpec> parseColumns(String spec) {
+        List<ColumnSpec> result = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String trimmed = part.trim().toLowerCase(Locale.ROOT);
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            Matcher matcher = COLUMN.matcher(trimmed);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Bad column spec: " + part);
+            }
+            int width = matcher.group(2) == null ? 64 : Integer.parseInt(matcher.group(2));
+            int count = matcher.group(3) == null ? 1 : Integer.parseInt(matcher.group(3));
+            ColumnSpec column = new ColumnSpec(matcher.group(1), width);
+            column.sqlType();
+            for (int i = 0; i < count; i++) {
+                result.add(column);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the database for this shape under {@code root}, generating it first if no complete
+     * copy exists.
+     */
+    public Source ensure(Path root) throws IOException, SQLException {
+        Path dir = root.resolve("t" + tables + "-r" + rowsPerTable + "-" + Integer.toHexString(columns.hashCode()));
+        String url = "jdbc:h2:file:" + dir.resolve("source").toAbsolutePath()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE";
+        Path marker = dir.resolve("complete.properties");
+        Properties properties = new Properties();
+        if (Files.exists(marker)) {
+            try (InputStream input = Files.newInputStream(marker)) {
+                properties.load(input);
+            }
+            return new Source(url, Long.parseLong(properties.getProperty("rows")),
+                    Long.parseLong(properties.getProperty("bytes")));
+        }
+
+        SyntheticIndex.delete(dir);
+        Files.createDirectories(dir);
+        long bytes = 0;
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            connection.setAutoCommit(false);
+            for (int t = 0; t < tables; t++) {
+                bytes += generateTable(connection, t);
+            }
+        }
+        long rows = (long) tables * rowsPerTable;
+        properties.setProperty("rows", Long.toString(rows));
+        properties.setProperty("bytes", Long.toString(bytes));
+        try (OutputStream output = Files.newOutputStream(marker)) {
+            properties.store(output, "columns: " + columns);
+        }
+        return new Source(url, rows, bytes);
+    }
+
+    private long generateTable(Connection connection, int tableIndex) throws SQLException {
+        String table = SyntheticIndex.tableName(tableIndex);
+        StringBuilder ddl = new StringBuilder("CREATE TABLE `" + table + "` (id BIGINT PRIMARY KEY, created_at DATETIME");
+        StringBuilder insert = new StringBuilder("INSERT INTO `" + table + "` VALUES (?, ?");
+        for (int c = 0; c < columns.size(); c++) {
+            ddl.append(", col_").append(c).append(' ').append(columns.get(c).sqlType());
+            insert.append(", ?");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ddl.append(')').toString());
+        }
+
+        SplittableRandom random = new SplittableRandom(tableIndex * 31L + 7);
+        long bytes = 0;
+        try (PreparedStatement statement = connection.prepareStatement(insert.append(')').toString())) {
+            for (int id = 1; id <= rowsPerTable; id++) {
+                statement.setLong(1, id);
+                statement.setTimestamp(2, timestamp(random));
+                bytes += 16;
+                for (int c = 0; c < columns.size(); c++) {
+                    bytes += bind(statement, c + 3, columns.get(c), random);
+                }
+                statement.addBatch();
+                if (id % BATCH == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+        return bytes;
+    }
+
+    private long bind(PreparedStatement statement, int index, ColumnSpec column, SplittableRandom random)
+            throws SQLException {
+        switch (column.type()) {
+            case "varchar", "text" -> {
+                String value = text(random, 1 + random.nextInt(Math.max(1, column.width())));
+                statement.setString(index, value);
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+            case "int" -> statement.setInt(index, random.nextInt(1_000_000));
+            case "bigint" -> statement.setLong(index, random.nextLong());
+            case "decimal" -> statement.setBigDecimal(index, BigDecimal.valueOf(random.nextLong(1_000_000_000), 2));
+            case "double" -> statement.setDouble(index, random.nextDouble() * 1_000_000);
+            case "datetime" -> statement.setTimestamp(index, timestamp(random));
+            case "date" -> statement.setDate(index, new java.sql.Date(timestamp(random).getTime()));
+            case "boolean" -> statement.setBoolean(index, random.nextBoolean());
+            default -> throw new IllegalArgumentException("Unknown column type: " + column.type());
+        }
+        return 8;
+    }
+
+    private static Timestamp timestamp(SplittableRandom random) {
+        return Timestamp.from(END.minusMillis(random.nextLong(SPAN)));
+    }
+
+    /**
+     * Words from the skewed vocabulary up to {@code maxChars} characters.
+     */
+    private String text(SplittableRandom random, int maxChars) {
+        StringBuilder text = new StringBuilder(maxChars);
+        while (true) {
+            double skew = random.nextDouble();
+            String word = vocabulary[(int) (vocabulary.length * skew * skew * skew)];
+            int needed = text.isEmpty() ? word.length() : word.length() + 1;
+            if (text.length() + needed > maxChars) {
+                return text.isEmpty() ? word.substring(0, Math.min(word.length(), maxChars)) : text.toString();
+            }
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(word);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.vectora.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * A deterministic synthetic index with the document layout {@code LuceneIndexer} writes: one
+ * shard per table, one {@code row} document per row with its JSON {@code data}, analyzed
+ * {@code content} and {@code created_at} point, plus a {@code table_meta} document per table.
+ * Word frequencies are skewed so there are both very common and rare terms to query.
+ *
+ * <p>The index is built once per shape under {@code bench.index.dir} (default: the temp
+ * directory) and reused by later forks and runs.
+ */
+public final class SyntheticIndex {
+
+    /** {@code created_at} values are spread over the two years before this instant. */
+    public static final Instant END = Instant.parse("2025-01-01T00:00:00Z");
+    public static final Instant START = END.minus(Duration.ofDays(730));
+
+    private static final String[] STATUSES = {"open", "pending", "shipped", "delivered", "cancelled", "returned"};
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ne", "ru", "sa", "to", "vi", "ze", "pa", "dor", "len", "mar", "tis", "qu", "bel"
+    };
+    private static final String COMPLETE = ".complete";
+
+    private final int tables;
+    private final int rowsPerTable;
+    private final int columns;
+    private final int textWords;
+    private final List<String> vocabulary;
+
+    public SyntheticIndex(int tables, int rowsPerTable, int columns, int textWords) {
+        this.tables = tables;
+        this.rowsPerTable = rowsPerTable;
+        this.columns = Math.max(4, columns);
+        this.textWords = textWords;
+        this.vocabulary = vocabulary(4000);
+    }
+
+    /**
+     * Returns the index directory for this shape, building it first if no complete copy exists.
+     */
+    public Path ensure() throws IOException {
+        Path root = Path.of(System.getProperty("bench.index.dir", System.getProperty("java.io.tmpdir")))
+                .resolve("vectora-bench")
+                .resolve("t" + tables + "-r" + rowsPerTable + "-c" + columns + "-w" + textWords);
+        if (Files.exists(root.resolve(COMPLETE))) {
+            return root;
+        }
+        delete(root);
+        Files.createDirectories(root);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int t = 0; t < tables; t++) {
+            writeTable(root, mapper, t);
+        }
+        Files.createFile(root.resolve(COMPLETE));
+        return root;
+    }
+
+    public static String tableName(int table) {
+        return String.format("table_%03d", table);
+    }
+
+    /**
+     * The {@code rank}-th most frequent word; rank 0 appears in most rows, rank 1000 in few.
+     */
+    public String word(int rank) {
+        return vocabulary.get(Math.min(rank, vocabulary.size() - 1));
+    }
+
+    public int tables() {
+        return tables;
+    }
+
+    public int rowsPerTable() {
+        return rowsPerTable;
+    }
+
+    private void writeTable(Path root, ObjectMapper mapper, int tableIndex) throws IOException {
+        String table = tableName(tableIndex);
+        SplittableRandom random = new SplittableRandom(tableIndex * 31L + 7);
+        long span = Duration.between(START, END).toMillis();
+        try (Directory directory = FSDirectory.open(Files.createDirectories(root.resolve(table)));
+             Analyzer analyzer = new StandardAnalyzer();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                     .setOpenMode(IndexWriterConfig.OpenMode.CREATE))) {
+            for (int id = 1; id <= rowsPerTable; id++) {
+                Instant createdAt = START.plusMillis(random.nextLong(span));
+                Map<String, Object> row = row(random, id, createdAt);
+                StringBuilder content = new StringBuilder();
+                for (Object value : row.values()) {
+                    if (value != null) {
+                        content.append(value).append(' ');
+                    }
+                }
+                Document doc = new Document();
+                doc.add(new StringField("doc_type", "row", Field.Store.YES));
+                doc.add(new StringField("table", table, Field.Store.YES));
+                doc.add(new StringField("id", Integer.toString(id), Field.Store.YES));
+                doc.add(new StoredField("data", mapper.writeValueAsString(row)));
+                doc.add(new TextField("content", content.toString(), Field.Store.NO));
+                long epoch = createdAt.toEpochMilli();
+                doc.add(new LongPoint("created_at_epoch", epoch));
+                doc.add(new StoredField("created_at_epoch", epoch));
+                doc.add(new StoredField("created_at", createdAt.toString()));
+                writer.addDocument(doc);
+            }
+            Document meta = new Document();
+            meta.add(new StringField("doc_type", "table_meta", Field.Store.YES));
+            meta.add(new StringField("table", table, Field.Store.YES));
+            meta.add(new StoredField("primary_key", "id"));
+            meta.add(new StoredField("row_count", (long) rowsPerTable));
+            meta.add(new StoredField("has_created_at", "true"));
+            writer.addDocument(meta);
+            writer.commit();
+        }
+    }
+
+    /**
+     * One row: the key and timestamp, then a repeating mix of short text, long text, status,
+     * integer and decimal columns up to {@link #columns}.
+     */
+    private Map<String, Object> row(SplittableRandom random, int id, Instant createdAt) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", id);
+        row.put("created_at", createdAt.toString());
+        for (int c = 2; c < columns; c++) {
+            String column = "col_" + c;
+            switch (c % 5) {
+                case 0 -> row.put(column, text(random, 2 + random.nextInt(3)));
+                case 1 -> row.put(column, text(random, textWords / 2 + random.nextInt(textWords + 1)));
+                case 2 -> row.put(column, STATUSES[random.nextInt(STATUSES.length)]);
+                case 3 -> row.put(column, random.nextInt(1_000_000));
+                default -> row.put(column, BigDecimal.valueOf(random.nextLong(10_000_000), 2));
+            }
+        }
+        return row;
+    }
+
+    private String text(SplittableRandom random, int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            double skew = random.nextDouble();
+            text.append(vocabulary.get((int) (vocabulary.size() * skew * skew * skew)));
+        }
+        return text.toString();
+    }
+
+    static List<String> vocabulary(int size) {
+        List<String> words = new ArrayList<>(size);
+        SplittableRandom random = new SplittableRandom(42);
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            String candidate = word.toString();
+            if (!words.contains(candidate)) {
+                words.add(candidate);
+            }
+        }
+        return List.copyOf(words);
+    }
+
+    static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (var walk = Files.walk(root)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Records the classes the server loads on startup and on every request path into an AOT cache
+# (JDK 25+, JEP 483/514) or, on older JDKs, an AppCDS archive. run.sh picks it up automatically.
+#
+# usage: scripts/aot-train.sh [config.yaml]
+# Build first: mvn -f server/pom.xml package
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+CONFIG="${1:-../config.yaml}"
+JAR="target/mcp-lucene-server-1.0-SNAPSHOT.jar"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+if [[ ! -f "$JAR" ]]; then
+  echo "Missing $JAR; run: mvn -f server/pom.xml package" >&2
+  exit 1
+fi
+
+if "$JAVA" -XX:+UnlockDiagnosticVMOptions -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q ' AOTCacheOutput '; then
+  rm -f target/app.aot
+  "$JAVA" -XX:AOTCacheOutput=target/app.aot -jar "$JAR" --config "$CONFIG" --train
+  echo "AOT cache written to server/target/app.aot"
+else
+  rm -f target/app.jsa
+  "$JAVA" -XX:ArchiveClassesAtExit=target/app.jsa -jar "$JAR" --config "$CONFIG" --train
+  echo "AppCDS archive written to server/target/app.jsa"
+fi
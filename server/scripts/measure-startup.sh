@@ -0,0 +1,45 @@
+#!/usr/bin/env bash
+# Measures time from JVM launch to the first successful /health response, with and without the
+# archive written by aot-train.sh, and prints the median of each.
+#
+# usage: scripts/measure-startup.sh [config.yaml] [runs]
+# The config's server.port must be free; use an existing index so no ingest runs.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+CONFIG="${1:-../config.yaml}"
+RUNS="${2:-5}"
+PORT="$(awk '/^server:/{s=1} s&&/port:/{print $2; exit}' "$CONFIG")"
+PORT="${PORT:-8080}"
+
+measure() {
+  local start end pid
+  start=$(date +%s%N)
+  NO_AOT="$1" scripts/run.sh --config "$CONFIG" >/dev/null 2>&1 &
+  pid=$!
+  until curl -sf "http://localhost:$PORT/health" >/dev/null 2>&1; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "server exited before answering" >&2
+      return 1
+    fi
+    sleep 0.01
+  done
+  end=$(date +%s%N)
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  echo $(( (end - start) / 1000000 ))
+}
+
+median() {
+  sort -n | awk '{v[NR]=$1} END {print (NR % 2) ? v[(NR+1)/2] : int((v[NR/2] + v[NR/2+1]) / 2)}'
+}
+
+for mode in baseline archive; do
+  no_aot=1
+  [[ "$mode" == "archive" ]] && no_aot=0
+  times=()
+  for _ in $(seq "$RUNS"); do
+    times+=("$(measure "$no_aot")")
+  done
+  printf '%-8s median %5s ms  (runs: %s)\n' "$mode" "$(printf '%s\n' "${times[@]}" | median)" "${times[*]}"
+done
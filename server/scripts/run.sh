@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+# Starts the server from the packaged jar, using the AOT cache or AppCDS archive written by
+# aot-train.sh when one exists. Extra arguments are passed to the server.
+#
+# usage: scripts/run.sh [--config config.yaml] [server args...]
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+JAR="target/mcp-lucene-server-1.0-SNAPSHOT.jar"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+JVM_OPTS=(${JAVA_OPTS:-})
+if [[ "${NO_AOT:-}" != "1" ]]; then
+  if [[ -f target/app.aot ]]; then
+    JVM_OPTS+=(-XX:AOTCache=target/app.aot)
+  elif [[ -f target/app.jsa ]]; then
+    JVM_OPTS+=(-XX:SharedArchiveFile=target/app.jsa)
+  fi
+fi
+
+exec "$JAVA" "${JVM_OPTS[@]}" -jar "$JAR" "$@"
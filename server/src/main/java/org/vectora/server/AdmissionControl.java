@@ -0,0 +1,63 @@
+package org.vectora.server;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The concurrency limiters for every endpoint and MCP tool class. Lookups and searches are
+ * limited separately so a burst of expensive searches cannot starve cheap lookups, and searches
+ * are shed first: while either lookup limiter is full, new searches are rejected too.
+ */
+public final class AdmissionControl {
+
+    public static final String HTTP_LOOKUP = "http_lookup";
+    public static final String HTTP_SEARCH = "http_search";
+    public static final String MCP_LOOKUP = "mcp_lookup";
+    public static final String MCP_SEARCH = "mcp_search";
+
+    private final AppConfig.AdmissionConfig config;
+    private final Map<String, ConcurrencyLimiter> limiters = new LinkedHashMap<>();
+
+    public AdmissionControl(AppConfig.AdmissionConfig config) {
+        this.config = config;
+        ConcurrencyLimiter httpLookup = new ConcurrencyLimiter(HTTP_LOOKUP, config, List.of());
+        ConcurrencyLimiter mcpLookup = new ConcurrencyLimiter(MCP_LOOKUP, config, List.of());
+        List<ConcurrencyLimiter> lookups = List.of(httpLookup, mcpLookup);
+        limiters.put(HTTP_LOOKUP, httpLookup);
+        limiters.put(MCP_LOOKUP, mcpLookup);
+        limiters.put(HTTP_SEARCH, new ConcurrencyLimiter(HTTP_SEARCH, config, lookups));
+        limiters.put(MCP_SEARCH, new ConcurrencyLimiter(MCP_SEARCH, config, lookups));
+    }
+
+    public ConcurrencyLimiter limiter(String name) {
+        ConcurrencyLimiter limiter = limiters.get(name);
+        if (limiter == null) {
+            throw new IllegalArgumentException("Unknown limiter: " + name);
+        }
+        return limiter;
+    }
+
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    public Collection<ConcurrencyLimiter> limiters() {
+        return limiters.values();
+    }
+
+    /**
+     * Answers a rejected HTTP request: 503 with a {@code Retry-After} hint.
+     */
+    public void reject(HttpServletResponse response, ConcurrencyLimiter limiter) throws IOException {
+        response.setHeader("Retry-After", String.valueOf(config.retryAfterSeconds()));
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("error", "Server busy");
+        payload.put("message", "Too many concurrent " + limiter.name() + " requests, retry later");
+        JsonUtil.writeJson(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, payload);
+    }
+}
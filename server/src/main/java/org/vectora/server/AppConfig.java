@@ -6,10 +6,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
-public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig mysql) {
+public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig mysql, McpConfig mcp,
+                        AdmissionConfig admission, ReadinessConfig readiness, IngestConfig ingest) {
 
     public static AppConfig load(Path path) throws IOException {
         if (path == null) {
@@ -27,36 +34,323 @@ public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig my
             Map<String, Object> serverMap = map(root, "server");
             Map<String, Object> luceneMap = map(root, "lucene");
             Map<String, Object> mysqlMap = map(root, "mysql");
+            Map<String, Object> mcpMap = map(root, "mcp");
+            Map<String, Object> admissionMap = map(root, "admission");
+            Map<String, Object> readinessMap = map(root, "readiness");
+            Map<String, Object> ingestMap = map(root, "ingest");
 
             ServerConfig server = new ServerConfig(
                     string(serverMap, "host", "0.0.0.0"),
-                    integer(serverMap, "port", 8080)
+                    integer(serverMap, "port", 8080),
+                    string(serverMap, "thread_model", "virtual"),
+                    integer(serverMap, "min_threads", 8),
+                    integer(serverMap, "max_threads", 200),
+                    integer(serverMap, "acceptors", -1),
+                    integer(serverMap, "selectors", -1),
+                    integer(serverMap, "idle_timeout_ms", 300_000),
+                    integer(serverMap, "sse_keep_alive_seconds", 20),
+                    bool(serverMap, "gzip", true),
+                    integer(serverMap, "gzip_min_bytes", 1024),
+                    string(serverMap, "admin_host", "127.0.0.1"),
+                    integer(serverMap, "admin_port", 0)
             );
             LuceneConfig lucene = new LuceneConfig(
-                    string(luceneMap, "index_path", "./data/index")
+                    string(luceneMap, "index_path", "./data/index"),
+                    shardGroups(map(luceneMap, "shard_groups")),
+                    integer(luceneMap, "ingest_threads", 1),
+                    integer(luceneMap, "refresh_interval_seconds", 0),
+                    mmapConfig(map(luceneMap, "mmap")),
+                    warmupConfig(map(luceneMap, "warmup")),
+                    integer(luceneMap, "search_threads", Runtime.getRuntime().availableProcessors()),
+                    writerConfig(map(luceneMap, "writer"))
             );
             MysqlConfig mysql = new MysqlConfig(
                     string(mysqlMap, "host", null),
                     integer(mysqlMap, "port", 3306),
                     string(mysqlMap, "database", null),
                     string(mysqlMap, "username", null),
-                    string(mysqlMap, "password", null)
+                    string(mysqlMap, "password", null),
+                    string(mysqlMap, "url", null)
             );
 
-            return new AppConfig(server, lucene, mysql);
+            McpConfig mcp = new McpConfig(
+                    mcpMap.containsKey("transports")
+                            ? List.copyOf(stringList(mcpMap.get("transports")))
+                            : List.of("sse", "streamable"),
+                    bool(mcpMap, "stateless", true),
+                    string(mcpMap, "mode", "sync"),
+                    integer(mcpMap, "search_threads", Runtime.getRuntime().availableProcessors()),
+                    integer(mcpMap, "search_queue", 256),
+                    string(mcpMap, "result_format", "json"),
+                    integer(mcpMap, "max_result_bytes", 16_000),
+                    integer(mcpMap, "max_value_chars", 200)
+            );
+
+            AdmissionConfig admission = new AdmissionConfig(
+                    bool(admissionMap, "enabled", true),
+                    integer(admissionMap, "initial_limit", 20),
+                    integer(admissionMap, "min_limit", 2),
+                    integer(admissionMap, "max_limit", 200),
+                    decimal(admissionMap, "latency_tolerance", 2.0),
+                    integer(admissionMap, "retry_after_seconds", 1)
+            );
+
+            ReadinessConfig readiness = new ReadinessConfig(
+                    integer(readinessMap, "max_refresh_age_seconds", 0),
+                    decimal(readinessMap, "max_load", 0.9)
+            );
+
+            String specPath = string(ingestMap, "spec", null);
+            Map<String, Object> spec = Map.of();
+            Path specDir = Path.of("");
+            if (specPath != null) {
+                Path resolved = path.toAbsolutePath().getParent().resolve(specPath);
+                if (!Files.exists(resolved)) {
+                    throw new IOException("Ingest spec not found: " + resolved);
+                }
+                spec = loadSpec(resolved);
+                specDir = resolved.getParent();
+            }
+
+            return new AppConfig(server, lucene, mysql, mcp, admission, readiness,
+                    ingestConfig(ingestMap, spec, specDir));
+        }
+    }
+
+    private static Map<String, Object> loadSpec(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            Map<String, Object> spec = new Yaml().load(input);
+            return spec == null ? Map.of() : spec;
+        }
+    }
+
+    /**
+     * HTTP settings. With {@code threadModel: virtual} the bounded platform pool only runs
+     * selectors and acceptors and every request is handled on its own virtual thread; with
+     * {@code platform} requests share the pool. {@code acceptors}/{@code selectors} of -1 let
+     * Jetty size them from the CPU count. With {@code gzip} on, REST responses of at least
+     * {@code gzipMinBytes} are compressed for clients that accept it. Operator endpoints such as
+     * {@code /ingest/pause} are only served on a second connector at {@code adminHost:adminPort},
+     * and not at all when {@code adminPort} is 0.
+     */
+    public record ServerConfig(String host, int port, String threadModel, int minThreads, int maxThreads,
+                               int acceptors, int selectors, int idleTimeoutMs, int sseKeepAliveSeconds,
+                               boolean gzip, int gzipMinBytes, String adminHost, int adminPort) {
+
+        public boolean virtualThreads() {
+            return "virtual".equalsIgnoreCase(threadModel);
+        }
+    }
+
+    /**
+     * Lucene settings. Every table is indexed into its own shard directory under {@code indexPath}
+     * unless it is listed in {@code shardGroups}, which maps a shard name to the tables it holds.
+     * {@code searchThreads} bounds how many batch search queries run at once, across all batches.
+     */
+    public record LuceneConfig(String indexPath, Map<String, List<String>> shardGroups,
+                               int ingestThreads, int refreshIntervalSeconds,
+                               MmapConfig mmap, WarmupConfig warmup, int searchThreads, WriterConfig writer) {
+
+        public static LuceneConfig defaults(String indexPath) {
+            return new LuceneConfig(indexPath, Map.of(), 1, 0,
+                    mmapConfig(Map.of()), warmupConfig(Map.of()),
+                    Runtime.getRuntime().availableProcessors(), writerConfig(Map.of()));
+        }
+    }
+
+    /**
+     * Index writer settings for ingest. A shard flushes a new segment when its buffered documents
+     * use {@code ramBufferMb} or, if set, reach {@code maxBufferedDocs}. {@code mergeThreads} of 0
+     * lets Lucene pick how many merges of a shard run at once. {@code storedFields} is
+     * {@code speed} or {@code compression}; the latter gives smaller indexes and slower row loads.
+     * With {@code forceMergeSegments > 0} each shard is merged down to that many segments before
+     * its final commit.
+     */
+    public record WriterConfig(double ramBufferMb, int maxBufferedDocs, int mergeThreads,
+                               MergePolicyConfig mergePolicy, String storedFields, int forceMergeSegments) {
+
+        public boolean bestCompression() {
+            return "compression".equalsIgnoreCase(storedFields);
+        }
+    }
+
+    /**
+     * Tiered merge policy parameters; values of 0 or less keep Lucene's defaults.
+     */
+    public record MergePolicyConfig(double segmentsPerTier, int maxMergeAtOnce, double maxMergedSegmentMb,
+                                    double floorSegmentMb, double deletesPctAllowed) {}
+
+    /**
+     * Memory-mapping for shard directories. Files whose extension is in {@code preloadExtensions}
+     * are paged in when a reader opens them; {@code maxChunkSizeMb <= 0} keeps Lucene's default.
+     */
+    public record MmapConfig(List<String> preloadExtensions, int maxChunkSizeMb) {}
+
+    /**
+     * Queries replayed against every new reader before it is published, repeated {@code rounds} times.
+     */
+    public record WarmupConfig(List<WarmupQuery> queries, int rounds, int limit) {}
+
+    public record WarmupQuery(String query, String table) {}
+
+    /**
+     * MCP server settings. {@code transports} lists the enabled transports ({@code sse},
+     * {@code streamable}); the streamable endpoint keeps no session state when {@code stateless}
+     * is set. In {@code async} mode tool calls run on a dedicated scheduler with
+     * {@code searchThreads} workers and at most {@code searchQueue} pending calls; calls beyond
+     * that are rejected immediately. {@code resultFormat} is the default search result format
+     * ({@code json} or {@code compact}); compact results are capped at {@code maxResultBytes} with
+     * string values cut at {@code maxValueChars}.
+     */
+    public record McpConfig(List<String> transports, boolean stateless, String mode,
+                            int searchThreads, int searchQueue,
+                            String resultFormat, int maxResultBytes, int maxValueChars) {
+
+        public boolean async() {
+            return "async".equalsIgnoreCase(mode);
         }
     }
 
-    public record ServerConfig(String host, int port) {}
+    /**
+     * Adaptive concurrency limits for the search and lookup endpoints and MCP tools. Each limit
+     * starts at {@code initialLimit}, grows while latency stays within {@code latencyTolerance}
+     * times the best observed latency and shrinks when it does not, always within
+     * {@code minLimit..maxLimit}. Rejected HTTP requests get a 503 with
+     * {@code Retry-After: retryAfterSeconds}.
+     */
+    public record AdmissionConfig(boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                                  double latencyTolerance, int retryAfterSeconds) {}
 
-    public record LuceneConfig(String indexPath) {}
+    /**
+     * When {@code /health/ready} reports the node unready. {@code maxRefreshAgeSeconds} bounds the
+     * time since the last successful index refresh (0: three refresh intervals, unchecked when
+     * refresh is off); {@code maxLoad} bounds in-flight requests as a fraction of any admission limit.
+     */
+    public record ReadinessConfig(int maxRefreshAgeSeconds, double maxLoad) {}
 
-    public record MysqlConfig(String host, int port, String database, String username, String password) {
+    /**
+     * How column values are read during ingest. Text values whose UTF-8 form exceeds
+     * {@code maxStoredBytes} are still indexed in full, streamed into the analyzer, but their copy
+     * in the stored row is cut to that size ({@code oversize: truncate}) or left out
+     * ({@code skip}). Binary columns are left out of rows entirely when {@code excludeBinary} is
+     * set. {@code columns} overrides these per {@code table.column}.
+     *
+     * <p>Every {@code checkpointSeconds} (0: only when a shard is finished) a shard being built
+     * commits its progress; with {@code resume}, a restarted ingest of the same tables skips the
+     * shards it finished and continues the others after their last committed key.
+     *
+     * <p>{@code tables} holds the schemas of the entities declared in the {@code spec} file
+     * ({@code sources.rdbms[].entities}), keyed by lower-case table name; tables without one are
+     * ingested with all their columns. {@code files} are its {@code sources.filesystem} entries.
+     */
+    public record IngestConfig(ColumnPolicy defaults, boolean excludeBinary, Map<String, ColumnPolicy> columns,
+                               ThrottleConfig throttle, boolean resume, int checkpointSeconds,
+                               Map<String, TableSchema> tables, List<FileSource> files) {
+
+        public ColumnPolicy policy(String table, String column) {
+            return columns.getOrDefault(table + "." + column, defaults);
+        }
+
+        /**
+         * The spec schema of {@code table}, or {@code null} when the spec does not declare it.
+         */
+        public TableSchema schema(String table) {
+            return tables.get(table.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * A table as declared by a spec entity. When {@code columns} is non-empty only the listed
+     * columns are fetched (plus the primary key and {@code created_at}, which ingest always
+     * needs), and each is stored in the row and indexed for search per its flags. A column not in
+     * a non-empty {@code allowFields} is never stored. Tables with {@code enabled: false} are not
+     * ingested.
+     */
+    public record TableSchema(String table, boolean enabled, Map<String, SchemaColumn> columns,
+                              Set<String> allowFields) {
+
+        public boolean fetches(String column) {
+            return columns.isEmpty() || columns.containsKey(column.toLowerCase(Locale.ROOT));
+        }
+
+        public boolean stores(String column) {
+            String key = column.toLowerCase(Locale.ROOT);
+            if (!allowFields.isEmpty() && !allowFields.contains(key)) {
+                return false;
+            }
+            return columns.isEmpty() || columns.containsKey(key) && columns.get(key).store();
+        }
+
+        public boolean indexes(String column) {
+            String key = column.toLowerCase(Locale.ROOT);
+            return columns.isEmpty() || columns.containsKey(key) && columns.get(key).index();
+        }
+    }
+
+    public record SchemaColumn(String name, boolean store, boolean index) {}
+
+    /**
+     * A directory tree ingested into its own shard, named {@code id} like a table. Files under
+     * {@code root} matching {@code includeGlobs} and none of {@code excludeGlobs} (relative paths,
+     * e.g. {@code **}{@code /*.md}) become documents whose id is their path relative to the root.
+     * {@code fields} ({@code path}, {@code filename}, {@code modified_at}, {@code size},
+     * {@code content}) says which are stored and indexed; at most {@code maxBytes} of a file are
+     * read. With {@code newerThanDays > 0} older files are left out. {@code incremental} updates
+     * the shard in place, re-reading only files whose modification time or size changed.
+     * {@code threads} directories are scanned at once.
+     */
+    public record FileSource(String id, Path root, boolean recursive, List<String> includeGlobs,
+                             List<String> excludeGlobs, boolean followSymlinks, int newerThanDays,
+                             boolean incremental, boolean extractContent, long maxBytes,
+                             Map<String, SchemaColumn> fields, int threads) {
+
+        public boolean stores(String field) {
+            SchemaColumn column = fields.get(field);
+            return column != null && column.store();
+        }
+
+        public boolean indexes(String field) {
+            SchemaColumn column = fields.get(field);
+            return column != null && column.index();
+        }
+    }
+
+    /**
+     * Ingest policy of one column; an {@code exclude}d column is neither stored nor indexed.
+     */
+    public record ColumnPolicy(int maxStoredBytes, String oversize, boolean exclude) {
+
+        public boolean skipOversize() {
+            return "skip".equalsIgnoreCase(oversize);
+        }
+    }
+
+    /**
+     * Adaptive ingest rate control. With {@code enabled}, ingest slows down (fewer rows per second,
+     * then fewer tables read at once) whenever fetching 500 rows takes longer than
+     * {@code maxFetchMs} or, if {@code maxReplicationLagSeconds > 0}, {@code lagQuery} reports more
+     * lag than that, and speeds back up while both stay comfortably within budget.
+     * {@code maxRowsPerSecond > 0} is a fixed ceiling. Ingest pauses while {@code pauseFile} exists.
+     */
+    public record ThrottleConfig(boolean enabled, int maxFetchMs, int maxReplicationLagSeconds, String lagQuery,
+                                 int lagCheckSeconds, int maxRowsPerSecond, String pauseFile) {}
+
+    /**
+     * The source database. {@code url}, when set, is used as the JDBC URL verbatim instead of one
+     * built from {@code host}, {@code port} and {@code database}, e.g. to ingest from an embedded
+     * MySQL-compatible database. The built URL enables {@code useCursorFetch} so Connector/J
+     * honours the ingest fetch size; a MySQL {@code url} should set it too.
+     */
+    public record MysqlConfig(String host, int port, String database, String username, String password,
+                              String url) {
         public String jdbcUrl() {
+            if (url != null && !url.isBlank()) {
+                return url;
+            }
             String hostPart = host == null || host.isBlank() ? "127.0.0.1" : host;
             String dbPart = database == null ? "" : database;
             return "jdbc:mysql://" + hostPart + ":" + port + "/" + dbPart
-                    + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC";
+                    + "?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&useCursorFetch=true";
         }
     }
 
@@ -64,7 +358,10 @@ public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig my
         if (root == null) {
             return new LinkedHashMap<>();
         }
-        Object value = root.get(key);
+        return asMap(root.get(key));
+    }
+
+    private static Map<String, Object> asMap(Object value) {
         if (value instanceof Map<?, ?> rawMap) {
             Map<String, Object> result = new LinkedHashMap<>();
             for (Map.Entry<?, ?> entry : rawMap.entrySet()) {
@@ -77,6 +374,193 @@ public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig my
         return new LinkedHashMap<>();
     }
 
+    private static MmapConfig mmapConfig(Map<String, Object> mmapMap) {
+        List<String> extensions = mmapMap.containsKey("preload_extensions")
+                ? stringList(mmapMap.get("preload_extensions"))
+                : List.of("tip", "tmd", "nvd", "nvm", "dvd", "dvm", "kdi", "kdm");
+        return new MmapConfig(List.copyOf(extensions), integer(mmapMap, "max_chunk_size_mb", 0));
+    }
+
+    private static WriterConfig writerConfig(Map<String, Object> writerMap) {
+        Map<String, Object> mergeMap = map(writerMap, "merge_policy");
+        return new WriterConfig(
+                decimal(writerMap, "ram_buffer_mb", 16.0),
+                integer(writerMap, "max_buffered_docs", 0),
+                integer(writerMap, "merge_threads", 0),
+                new MergePolicyConfig(
+                        decimal(mergeMap, "segments_per_tier", 0),
+                        integer(mergeMap, "max_merge_at_once", 0),
+                        decimal(mergeMap, "max_merged_segment_mb", 0),
+                        decimal(mergeMap, "floor_segment_mb", 0),
+                        decimal(mergeMap, "deletes_pct_allowed", 0)),
+                string(writerMap, "stored_fields", "speed"),
+                integer(writerMap, "force_merge_segments", 0));
+    }
+
+    private static WarmupConfig warmupConfig(Map<String, Object> warmupMap) {
+        List<WarmupQuery> queries = new ArrayList<>();
+        if (warmupMap.get("queries") instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?> rawMap) {
+                    Map<String, Object> queryMap = asMap(rawMap);
+                    queries.add(new WarmupQuery(string(queryMap, "query", ""), string(queryMap, "table", null)));
+                } else if (item != null) {
+                    queries.add(new WarmupQuery(item.toString().trim(), null));
+                }
+            }
+        }
+        return new WarmupConfig(List.copyOf(queries),
+                Math.max(1, integer(warmupMap, "rounds", 1)),
+                integer(warmupMap, "limit", 50));
+    }
+
+    private static IngestConfig ingestConfig(Map<String, Object> ingestMap, Map<String, Object> spec, Path specDir) {
+        ColumnPolicy defaults = new ColumnPolicy(
+                Math.max(1, integer(ingestMap, "max_stored_bytes", 65_536)),
+                string(ingestMap, "oversize", "truncate"),
+                false);
+        Map<String, ColumnPolicy> columns = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : map(ingestMap, "columns").entrySet()) {
+            Map<String, Object> columnMap = asMap(entry.getValue());
+            columns.put(entry.getKey(), new ColumnPolicy(
+                    Math.max(1, integer(columnMap, "max_stored_bytes", defaults.maxStoredBytes())),
+                    string(columnMap, "oversize", defaults.oversize()),
+                    bool(columnMap, "exclude", false)));
+        }
+        Map<String, Object> throttleMap = map(ingestMap, "throttle");
+        ThrottleConfig throttle = new ThrottleConfig(
+                bool(throttleMap, "enabled", false),
+                Math.max(1, integer(throttleMap, "max_fetch_ms", 250)),
+                integer(throttleMap, "max_replication_lag_seconds", 0),
+                string(throttleMap, "lag_query", "SHOW REPLICA STATUS"),
+                Math.max(1, integer(throttleMap, "lag_check_seconds", 5)),
+                integer(throttleMap, "max_rows_per_second", 0),
+                string(throttleMap, "pause_file", null));
+        return new IngestConfig(defaults, bool(ingestMap, "exclude_binary", true), Map.copyOf(columns), throttle,
+                bool(ingestMap, "resume", true), integer(ingestMap, "checkpoint_seconds", 60),
+                tableSchemas(spec), fileSources(spec, specDir));
+    }
+
+    private static Map<String, TableSchema> tableSchemas(Map<String, Object> spec) {
+        Map<String, TableSchema> tables = new LinkedHashMap<>();
+        for (Map<String, Object> source : mapList(map(spec, "sources").get("rdbms"))) {
+            for (Map<String, Object> entity : mapList(source.get("entities"))) {
+                // "schema.table" names the table; ingest reads from the connection's own schema
+                String table = string(entity, "table", string(entity, "name", null));
+                if (table == null) {
+                    continue;
+                }
+                table = table.substring(table.lastIndexOf('.') + 1);
+                Map<String, Object> indexing = map(entity, "indexing");
+                Map<String, SchemaColumn> columns = new LinkedHashMap<>();
+                for (Map<String, Object> column : mapList(indexing.get("columns"))) {
+                    String name = string(column, "name", null);
+                    if (name != null) {
+                        columns.put(name.toLowerCase(Locale.ROOT),
+                                new SchemaColumn(name, bool(column, "store", true), bool(column, "index", true)));
+                    }
+                }
+                Set<String> allowFields = new LinkedHashSet<>();
+                for (String field : stringList(map(entity, "rest").get("allow_fields"))) {
+                    allowFields.add(field.toLowerCase(Locale.ROOT));
+                }
+                tables.put(table.toLowerCase(Locale.ROOT), new TableSchema(table, bool(indexing, "enabled", true),
+                        Collections.unmodifiableMap(columns), Set.copyOf(allowFields)));
+            }
+        }
+        return Map.copyOf(tables);
+    }
+
+    private static List<FileSource> fileSources(Map<String, Object> spec, Path specDir) {
+        List<FileSource> sources = new ArrayList<>();
+        for (Map<String, Object> source : mapList(map(spec, "sources").get("filesystem"))) {
+            String id = string(source, "id", null);
+            String root = string(source, "root_path", null);
+            Map<String, Object> indexing = map(source, "indexing");
+            if (id == null || root == null || !bool(indexing, "enabled", true)) {
+                continue;
+            }
+            Map<String, Object> scanning = map(source, "scanning");
+            int newerThanDays = 0;
+            for (Map<String, Object> filter : mapList(source.get("filters"))) {
+                if ("time_window".equals(string(filter, "kind", null))) {
+                    newerThanDays = integer(filter, "newer_than_days", 0);
+                }
+            }
+            Map<String, SchemaColumn> fields = new LinkedHashMap<>();
+            for (Map<String, Object> field : mapList(indexing.get("fields"))) {
+                String name = string(field, "name", null);
+                if (name != null) {
+                    fields.put(name, new SchemaColumn(name, bool(field, "store", true), bool(field, "index", true)));
+                }
+            }
+            if (fields.isEmpty()) {
+                fields.put("path", new SchemaColumn("path", true, true));
+                fields.put("filename", new SchemaColumn("filename", true, true));
+                fields.put("modified_at", new SchemaColumn("modified_at", true, false));
+                fields.put("size", new SchemaColumn("size", true, false));
+                fields.put("content", new SchemaColumn("content", false, true));
+            }
+            Map<String, Object> extraction = map(indexing, "content_extraction");
+            List<String> include = stringList(scanning.get("include_globs"));
+            sources.add(new FileSource(
+                    id,
+                    specDir.resolve(root).normalize(),
+                    bool(scanning, "recursive", true),
+                    List.copyOf(include.isEmpty() ? List.of("**") : include),
+                    List.copyOf(stringList(scanning.get("exclude_globs"))),
+                    bool(scanning, "follow_symlinks", false),
+                    newerThanDays,
+                    !"full".equalsIgnoreCase(string(indexing, "mode", "incremental")),
+                    bool(extraction, "enabled", true),
+                    Math.max(0, integer(extraction, "max_bytes", 5_000_000)),
+                    Collections.unmodifiableMap(fields),
+                    Math.max(1, integer(scanning, "threads", Runtime.getRuntime().availableProcessors()))));
+        }
+        return List.copyOf(sources);
+    }
+
+    private static List<Map<String, Object>> mapList(Object value) {
+        List<Map<String, Object>> maps = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item instanceof Map<?, ?>) {
+                    maps.add(asMap(item));
+                }
+            }
+        }
+        return maps;
+    }
+
+    private static Map<String, List<String>> shardGroups(Map<String, Object> groupsMap) {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : groupsMap.entrySet()) {
+            List<String> tables = stringList(entry.getValue());
+            if (!tables.isEmpty()) {
+                groups.put(entry.getKey(), List.copyOf(tables));
+            }
+        }
+        return Map.copyOf(groups);
+    }
+
+    private static List<String> stringList(Object value) {
+        List<String> result = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            for (Object item : list) {
+                if (item != null && !item.toString().isBlank()) {
+                    result.add(item.toString().trim());
+                }
+            }
+        } else if (value != null) {
+            for (String part : value.toString().split(",")) {
+                if (!part.isBlank()) {
+                    result.add(part.trim());
+                }
+            }
+        }
+        return result;
+    }
+
     private static String string(Map<String, Object> map, String key, String fallback) {
         if (map == null) {
             return fallback;
@@ -106,4 +590,36 @@ public record AppConfig(ServerConfig server, LuceneConfig lucene, MysqlConfig my
             return fallback;
         }
     }
+
+    private static boolean bool(Map<String, Object> map, String key, boolean fallback) {
+        if (map == null) {
+            return fallback;
+        }
+        Object value = map.get(key);
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value == null || value.toString().isBlank()) {
+            return fallback;
+        }
+        return Boolean.parseBoolean(value.toString().trim());
+    }
+
+    private static double decimal(Map<String, Object> map, String key, double fallback) {
+        if (map == null) {
+            return fallback;
+        }
+        Object value = map.get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
 }
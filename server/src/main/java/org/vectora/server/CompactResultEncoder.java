@@ -0,0 +1,201 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes a {@link LuceneService} search response as a compact table for MCP clients: one shared
+ * {@code columns} header, one array per row, long values cut at {@code maxValueChars}, and rows
+ * added only while the payload stays within {@code maxBytes}. When rows are left over, the result
+ * carries a {@code next_cursor} that resumes the same search after the last row returned.
+ */
+public final class CompactResultEncoder {
+
+    private static final ObjectWriter WRITER = JsonUtil.MAPPER.writer();
+    private static final String ELLIPSIS = "…";
+    private static final int NULL_CELL = ",null".length();
+
+    private CompactResultEncoder() {}
+
+    /**
+     * Payload limits. {@code maxBytes} is the UTF-8 size budget for the encoded rows; at least one
+     * row is always returned so a cursor can make progress.
+     */
+    public record Options(int maxBytes, int maxValueChars) {}
+
+    public static String encode(Map<String, Object> response, LuceneService.SearchRequest request,
+                                Options options) throws IOException {
+        List<Map<String, Object>> results = results(response);
+        String table = request.table();
+        boolean global = table == null || table.isBlank();
+        Set<String> columns = new LinkedHashSet<>();
+        if (global) {
+            columns.add("_table");
+        }
+        columns.add("_id");
+
+        // The header only names columns of rows that fit the budget. A row that brings new
+        // columns widens every row before it by one trailing null each.
+        List<List<Object>> rows = new ArrayList<>();
+        int used = 0;
+        int truncated = 0;
+        for (Map<String, Object> result : results) {
+            Map<String, Object> data = data(result);
+            List<String> added = new ArrayList<>();
+            for (String column : data.keySet()) {
+                if (!columns.contains(column)) {
+                    added.add(column);
+                }
+            }
+            List<String> header = new ArrayList<>(columns);
+            header.addAll(added);
+            List<Object> cells = new ArrayList<>(header.size());
+            int cut = 0;
+            for (String column : header) {
+                Object value = cell(column, result, data);
+                if (value instanceof CharSequence text && text.length() > options.maxValueChars()) {
+                    value = text.subSequence(0, cutIndex(text, options.maxValueChars())) + ELLIPSIS;
+                    cut++;
+                }
+                cells.add(value);
+            }
+            int size = utf8Length(WRITER.writeValueAsString(cells)) + 1 + NULL_CELL * added.size() * rows.size();
+            if (!rows.isEmpty() && used + size > options.maxBytes()) {
+                break;
+            }
+            if (!added.isEmpty()) {
+                columns.addAll(added);
+                for (List<Object> row : rows) {
+                    row.addAll(Collections.nCopies(added.size(), null));
+                }
+            }
+            rows.add(cells);
+            used += size;
+            truncated += cut;
+        }
+
+        // The service clamps the offset so offset + limit stays within MAX_WINDOW; label the page
+        // with the offset it was actually served from, and shrink the next page's limit so its
+        // offset is not clamped back over rows already returned.
+        long count = ((Number) response.getOrDefault("count", 0L)).longValue();
+        int offset = ((Number) response.getOrDefault("offset", 0)).intValue();
+        int nextOffset = offset + rows.size();
+        String nextCursor = nextOffset < Math.min(count, LuceneService.MAX_WINDOW)
+                ? cursor(request, nextOffset, Math.min(request.limit(), LuceneService.MAX_WINDOW - nextOffset))
+                : null;
+
+        StringWriter out = new StringWriter(used + 256);
+        try (JsonGenerator generator = JsonUtil.MAPPER.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("query", request.query() == null ? "" : request.query());
+            generator.writeStringField("table", table);
+            generator.writeNumberField("count", count);
+            generator.writeNumberField("offset", offset);
+            generator.writeNumberField("returned", rows.size());
+            generator.writeArrayFieldStart("columns");
+            for (String column : columns) {
+                generator.writeString(column);
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("rows");
+            for (List<Object> row : rows) {
+                WRITER.writeValue(generator, row);
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("truncated_values", truncated);
+            generator.writeStringField("next_cursor", nextCursor);
+            generator.writeEndObject();
+        }
+        return out.toString();
+    }
+
+    /**
+     * Decodes a {@code next_cursor} back into the search it continues.
+     */
+    public static LuceneService.SearchRequest decodeCursor(String cursor) {
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor);
+            Map<String, Object> state = JsonUtil.MAPPER.readValue(json, JsonUtil.MAPPER.getTypeFactory()
+                    .constructMapType(LinkedHashMap.class, String.class, Object.class));
+            return new LuceneService.SearchRequest(
+                    (String) state.get("query"),
+                    (String) state.get("table"),
+                    longValue(state.get("from")),
+                    longValue(state.get("to")),
+                    ((Number) state.get("limit")).intValue(),
+                    ((Number) state.get("offset")).intValue());
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Where to cut a long value: backs up one char rather than split a surrogate pair, which
+     * would leave a lone surrogate that cannot be encoded as UTF-8.
+     */
+    private static int cutIndex(CharSequence text, int maxChars) {
+        int cut = Math.max(0, maxChars);
+        return cut > 0 && Character.isHighSurrogate(text.charAt(cut - 1)) ? cut - 1 : cut;
+    }
+
+    private static String cursor(LuceneService.SearchRequest request, int offset, int limit) throws IOException {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("query", request.query());
+        state.put("table", request.table());
+        state.put("from", request.createdFrom());
+        state.put("to", request.createdTo());
+        state.put("limit", limit);
+        state.put("offset", offset);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(WRITER.writeValueAsBytes(state));
+    }
+
+    /**
+     * The value of one header column: the row id and table are prefixed with {@code _}, every other
+     * column is a data column.
+     */
+    private static Object cell(String column, Map<String, Object> result, Map<String, Object> data) {
+        return switch (column) {
+            case "_table" -> result.get("table");
+            case "_id" -> result.get("id");
+            default -> data.get(column);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> results(Map<String, Object> response) {
+        Object results = response.get("results");
+        return results instanceof List<?> list ? (List<Map<String, Object>>) list : List.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> data(Map<String, Object> result) {
+        Object data = result.get("data");
+        return data instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of();
+    }
+
+    private static Long longValue(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                length += c >= 0x800 && !Character.isSurrogate(c) ? 2 : 1;
+            }
+        }
+        return length;
+    }
+}
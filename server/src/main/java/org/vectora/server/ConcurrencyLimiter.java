@@ -0,0 +1,138 @@
+package org.vectora.server;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * An adaptive cap on concurrent requests of one class, adjusted AIMD-style from measured latency.
+ * Latency is tracked as two moving averages: a short one over the last few requests and a long
+ * one over the last several hundred, so a steady mix of cheap and expensive queries settles both
+ * at the same level. While the short average stays within {@code tolerance} times the long one
+ * and the limiter is at least half used, the limit grows by one per limit's worth of requests.
+ * When the short average exceeds that and the limiter is nearly full, so requests are slowing
+ * each other down rather than just being expensive, the limit is cut by 10%, at most once per
+ * second. Requests over the limit are rejected straight away rather than queued.
+ */
+public final class ConcurrencyLimiter {
+
+    public static final long REJECTED = Long.MIN_VALUE;
+
+    private static final double DECREASE_FACTOR = 0.9;
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+    private static final double NEAR_LIMIT = 0.8;
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final List<ConcurrencyLimiter> yieldTo;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final LongSupplier clock;
+    private volatile int limit;
+    private double shortNanos;
+    private double longNanos;
+    private long lastDecreaseNanos;
+    private int successes;
+
+    ConcurrencyLimiter(String name, AppConfig.AdmissionConfig config, List<ConcurrencyLimiter> yieldTo) {
+        this(name, config, yieldTo, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(String name, AppConfig.AdmissionConfig config, List<ConcurrencyLimiter> yieldTo,
+                       LongSupplier clock) {
+        this.name = name;
+        this.clock = clock;
+        this.enabled = config.enabled();
+        this.minLimit = Math.max(1, config.minLimit());
+        this.maxLimit = Math.max(minLimit, config.maxLimit());
+        this.tolerance = Math.max(1.0, config.latencyTolerance());
+        this.yieldTo = List.copyOf(yieldTo);
+        this.limit = Math.min(maxLimit, Math.max(minLimit, config.initialLimit()));
+        this.lastDecreaseNanos = clock.getAsLong() - DECREASE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Admits a request if the limit allows it and none of the higher-priority limiters this one
+     * yields to is saturated.
+     *
+     * @return a start timestamp to pass to {@link #release}, or {@link #REJECTED}
+     */
+    public long tryAcquire() {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return clock.getAsLong();
+        }
+        for (ConcurrencyLimiter other : yieldTo) {
+            if (other.saturated()) {
+                rejected.incrementAndGet();
+                return REJECTED;
+            }
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return REJECTED;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return clock.getAsLong();
+    }
+
+    public void release(long start) {
+        int concurrent = inFlight.getAndDecrement();
+        if (enabled) {
+            onSample(clock.getAsLong() - start, concurrent);
+        }
+    }
+
+    private synchronized void onSample(long latencyNanos, int concurrent) {
+        long now = clock.getAsLong();
+        double latency = Math.max(1, latencyNanos);
+        if (longNanos == 0) {
+            shortNanos = latency;
+            longNanos = latency;
+        } else {
+            shortNanos += (latency - shortNanos) * 2 / (SHORT_WINDOW + 1);
+            longNanos += (latency - longNanos) * 2 / (LONG_WINDOW + 1);
+        }
+
+        if (shortNanos > longNanos * tolerance) {
+            successes = 0;
+            if (concurrent >= limit * NEAR_LIMIT && now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+                limit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+                lastDecreaseNanos = now;
+            }
+        } else if (concurrent * 2 >= limit && ++successes >= limit) {
+            successes = 0;
+            limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    private boolean saturated() {
+        return enabled && inFlight.get() >= limit;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+}
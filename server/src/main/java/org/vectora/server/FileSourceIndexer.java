@@ -0,0 +1,416 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes the files of one {@link AppConfig.FileSource} as rows of a table named after the source:
+ * the id is the path relative to the root (always with {@code /}), {@code data} holds the stored
+ * fields and {@code content} the indexed ones, and the modification time doubles as
+ * {@code created_at} so searches can filter on it. Directories are scanned in parallel on a
+ * {@link ForkJoinPool}, one task per directory, each adding its files to the shared writer.
+ *
+ * <p>File content is read through a {@link FileChannel}, memory-mapped from
+ * {@value #MAP_THRESHOLD} bytes on, up to {@code max_bytes}, and decoded as UTF-8 straight into
+ * the analyzer; a file with a NUL byte near its start is taken as binary and only its path is
+ * indexed. Each document records the file's modification time and size, so an incremental run
+ * re-reads only files whose version changed and deletes the documents of files that are gone.
+ */
+final class FileSourceIndexer {
+
+    /**
+     * Commits the shard when a checkpoint is due; called by scanning threads between files.
+     */
+    interface Checkpoint {
+        void maybeCommit() throws IOException;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSourceIndexer.class);
+    private static final String VERSION_FIELD = "file_version";
+    private static final int MAP_THRESHOLD = 256 * 1024;
+    private static final int BINARY_SNIFF_BYTES = 8192;
+    private static final ThreadLocal<CharsetDecoder> DECODER = ThreadLocal.withInitial(() ->
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAP_THRESHOLD));
+
+    private final AppConfig.FileSource source;
+    private final int maxStoredBytes;
+    private final IndexWriter writer;
+    private final ObjectMapper objectMapper;
+    private final Checkpoint checkpoint;
+    private final List<PathMatcher> include;
+    private final List<PathMatcher> exclude;
+    private final List<PathMatcher> excludeDirectories;
+    private final LinkOption[] linkOptions;
+    private final long notBeforeMillis;
+    private final Metrics.Counter rowsIndexed;
+    private final Map<String, String> previous = new HashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+    private final AtomicLong read = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    FileSourceIndexer(AppConfig.FileSource source, AppConfig.IngestConfig ingest, IndexWriter writer,
+                      ObjectMapper objectMapper, Checkpoint checkpoint) {
+        this.source = source;
+        this.maxStoredBytes = ingest.defaults().maxStoredBytes();
+        this.writer = writer;
+        this.objectMapper = objectMapper;
+        this.checkpoint = checkpoint;
+        this.include = matchers(source.includeGlobs());
+        this.exclude = matchers(source.excludeGlobs());
+        this.excludeDirectories = matchers(source.excludeGlobs().stream()
+                .filter(glob -> glob.endsWith("/**"))
+                .map(glob -> glob.substring(0, glob.length() - 3))
+                .toList());
+        this.linkOptions = source.followSymlinks() ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        this.notBeforeMillis = source.newerThanDays() > 0
+                ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(source.newerThanDays())
+                : Long.MIN_VALUE;
+        this.rowsIndexed = Metrics.counter("ingest_rows_total", "Rows indexed per table", "table", source.id());
+    }
+
+    /**
+     * Scans the source and brings the shard up to date, returning the number of files it holds.
+     */
+    long index() throws IOException {
+        if (!Files.isDirectory(source.root())) {
+            throw new IOException("Root of file source " + source.id() + " is not a directory: " + source.root());
+        }
+        if (source.incremental()) {
+            loadVersions();
+        }
+        Object rootKey = Files.readAttributes(source.root(), BasicFileAttributes.class).fileKey();
+        if (rootKey != null) {
+            visited.add(rootKey);
+        }
+        ForkJoinPool pool = new ForkJoinPool(source.threads());
+        try {
+            pool.invoke(new DirectoryTask(source.root(), ""));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long removed = 0;
+        for (String id : previous.keySet()) {
+            if (!seen.contains(id)) {
+                writer.deleteDocuments(new Term("id", id));
+                removed++;
+            }
+        }
+        LOGGER.info("File source {}: {} files, {} read, {} unchanged, {} removed, {} unreadable",
+                source.id(), seen.size(), read.get(), seen.size() - read.get(), removed, failed.get());
+        return seen.size();
+    }
+
+    /**
+     * The id and version of every file the shard holds, from the writer's current state.
+     */
+    private void loadVersions() throws IOException {
+        try (DirectoryReader reader = DirectoryReader.open(writer)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            TopDocs rows = searcher.search(new TermQuery(new Term("doc_type", "row")), Math.max(1, reader.numDocs()));
+            StoredFields storedFields = searcher.storedFields();
+            Set<String> fields = Set.of("id", VERSION_FIELD);
+            for (var hit : rows.scoreDocs) {
+                Document doc = storedFields.document(hit.doc, fields);
+                String id = doc.get("id");
+                if (id != null) {
+                    previous.put(id, doc.get(VERSION_FIELD));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists one directory, forking a task per subdirectory and indexing its files in between.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final String relative;
+
+        DirectoryTask(Path directory, String relative) {
+            this.directory = directory;
+            this.relative = relative;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    String path = relative + entry.getFileName();
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, linkOptions);
+                    } catch (IOException e) {
+                        LOGGER.debug("Skipping {}: {}", entry, e.getMessage());
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (source.recursive() && !matches(excludeDirectories, path)
+                                && (attributes.fileKey() == null || visited.add(attributes.fileKey()))) {
+                            subdirectories.add(new DirectoryTask(entry, path + "/"));
+                        }
+                    } else if (attributes.isRegularFile() && matches(include, path) && !matches(exclude, path)) {
+                        indexFile(entry, path, attributes);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cannot list {}: {}", directory, e.getMessage());
+                failed.incrementAndGet();
+            }
+            invokeAll(subdirectories);
+        }
+    }
+
+    private void indexFile(Path file, String id, BasicFileAttributes attributes) {
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (modified < notBeforeMillis) {
+            return;
+        }
+        seen.add(id);
+        String version = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) + ":" + attributes.size();
+        if (version.equals(previous.get(id))) {
+            return;
+        }
+        Document doc;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            doc = document(channel, file, id, attributes, modified, version);
+        } catch (IOException e) {
+            // deleted or locked while scanning: keep what the shard has, the next run retries
+            LOGGER.warn("Cannot read {}: {}", file, e.getMessage());
+            failed.incrementAndGet();
+            if (!previous.containsKey(id)) {
+                seen.remove(id);
+            }
+            return;
+        }
+        try {
+            if (previous.containsKey(id)) {
+                writer.updateDocument(new Term("id", id), doc);
+            } else {
+                writer.addDocument(doc);
+            }
+            read.incrementAndGet();
+            rowsIndexed.increment();
+            checkpoint.maybeCommit();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Document document(FileChannel channel, Path file, String id, BasicFileAttributes attributes,
+                              long modified, String version) throws IOException {
+        String modifiedAt = Instant.ofEpochMilli(modified).toString();
+        String filename = file.getFileName().toString();
+        Document doc = new Document();
+        doc.add(new StringField("doc_type", "row", Field.Store.YES));
+        doc.add(new StringField("table", source.id(), Field.Store.YES));
+        doc.add(new StringField("id", id, Field.Store.YES));
+        doc.add(new StoredField(VERSION_FIELD, version));
+        doc.add(new LongPoint("created_at_epoch", modified));
+        doc.add(new StoredField("created_at_epoch", modified));
+        doc.add(new StoredField("created_at", modifiedAt));
+
+        ByteBuffer content = null;
+        if (source.extractContent() && (source.stores("content") || source.indexes("content"))) {
+            content = read(channel, Math.min(attributes.size(), source.maxBytes()));
+            if (isBinary(content)) {
+                content = null;
+            }
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        StringBuilder text = new StringBuilder();
+        addField(data, text, "path", id);
+        addField(data, text, "filename", filename);
+        addField(data, text, "modified_at", modifiedAt);
+        addField(data, text, "size", attributes.size());
+        if (content != null && source.stores("content")) {
+            data.put("content", decode(content.duplicate().limit(storedLimit(content, maxStoredBytes))));
+        }
+        doc.add(new StoredField("data", json(data)));
+        if (!text.isEmpty()) {
+            doc.add(new TextField("content", text.toString(), Field.Store.NO));
+        }
+        if (content != null && source.indexes("content")) {
+            doc.add(new TextField("content", new DecodingReader(content, DECODER.get())));
+        }
+        return doc;
+    }
+
+    private void addField(Map<String, Object> data, StringBuilder text, String field, Object value) {
+        if (source.stores(field)) {
+            data.put(field, value);
+        }
+        if (source.indexes(field)) {
+            text.append(value).append(' ');
+        }
+    }
+
+    /**
+     * The first {@code length} bytes of the file: mapped for large files, otherwise read into
+     * this thread's buffer, which stays valid until the thread reads its next file.
+     */
+    private static ByteBuffer read(FileChannel channel, long length) throws IOException {
+        if (length >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        ByteBuffer buffer = READ_BUFFER.get().clear().limit((int) length);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading until full or end of file
+        }
+        return buffer.flip();
+    }
+
+    private static boolean isBinary(ByteBuffer content) {
+        int end = Math.min(content.limit(), BINARY_SNIFF_BYTES);
+        for (int i = 0; i < end; i++) {
+            if (content.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Where to cut content stored under a byte budget: backs up over UTF-8 continuation bytes so
+     * the cut never splits a character into a replacement char.
+     */
+    private static int storedLimit(ByteBuffer content, int maxBytes) {
+        int end = Math.min(content.limit(), maxBytes);
+        if (end < content.limit()) {
+            while (end > content.position() && (content.get(end) & 0xC0) == 0x80) {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    private static String decode(ByteBuffer bytes) {
+        try {
+            return DECODER.get().reset().decode(bytes).toString();
+        } catch (IOException e) {
+            // cannot happen: malformed input is replaced
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String json(Map<String, Object> data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Glob matchers over relative paths. A pattern starting with {@code **}{@code /} also matches
+     * at the root, which {@link PathMatcher} globs do not.
+     */
+    private static List<PathMatcher> matchers(List<String> globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+            if (glob.startsWith("**/")) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.substring(3)));
+            }
+        }
+        return matchers;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, String relative) {
+        Path path = Path.of(relative);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes UTF-8 from a buffer as the analyzer reads, so file text is never copied into a
+     * {@link String}.
+     */
+    private static final class DecodingReader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder;
+        private boolean done;
+
+        DecodingReader(ByteBuffer bytes, CharsetDecoder decoder) {
+            this.bytes = bytes;
+            this.decoder = decoder.reset();
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (done) {
+                return -1;
+            }
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            decoder.decode(bytes, out, true);
+            if (!bytes.hasRemaining() && decoder.flush(out).isUnderflow()) {
+                done = true;
+            }
+            int count = out.position() - offset;
+            return count == 0 && done ? -1 : count;
+        }
+
+        @Override
+        public void close() {
+            // the buffer belongs to the scanning thread or is unmapped by the garbage collector
+        }
+    }
+}
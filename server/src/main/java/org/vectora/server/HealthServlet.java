@@ -8,6 +8,10 @@ import java.io.IOException;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/**
+ * Liveness probe: answers as long as the process can serve HTTP. Use {@code /health/ready} to
+ * decide whether to route traffic here.
+ */
 public class HealthServlet extends HttpServlet {
 
     @Override
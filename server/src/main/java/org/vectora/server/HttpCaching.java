@@ -0,0 +1,73 @@
+package org.vectora.server;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ETag helpers for conditional GETs. Tags are strong and quoted; {@code If-None-Match} may list
+ * several tags or {@code *}, and weak tags compare by their opaque value.
+ */
+public final class HttpCaching {
+
+    private HttpCaching() {}
+
+    /**
+     * A strong ETag from the SHA-256 of {@code parts}, truncated to 16 bytes.
+     */
+    public static String etag(String... parts) {
+        MessageDigest digest = sha256();
+        for (String part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return quote(digest.digest());
+    }
+
+    /**
+     * A strong ETag from the SHA-256 of a response body.
+     */
+    public static String etag(byte[] body) {
+        return quote(sha256().digest(body));
+    }
+
+    /**
+     * Sets {@code ETag} on the response and, when the request already holds that tag, answers
+     * 304 Not Modified. Callers stop processing when this returns true.
+     */
+    public static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag) {
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "no-cache");
+        String header = request.getHeader("If-None-Match");
+        if (header == null || header.isBlank()) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String quote(byte[] hash) {
+        return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+    }
+}
@@ -0,0 +1,404 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexDeletionPolicy;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.JDBCType;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress of one shard within an ingest run, kept in the user data of the shard's commits: the
+ * run id, the tables finished so far with their row counts, and for the table being read the
+ * primary key of the last committed row and the rows indexed up to it. Commits written while a
+ * shard is still being built are marked as checkpoints; {@link DeletionPolicy} keeps the last
+ * complete commit next to them and {@link LuceneService} only serves complete ones, so searches
+ * keep seeing the previous build until the new one is finished.
+ *
+ * <p>The last key is stored with the SQL type and Java class of each value ({@link #encodeKey}),
+ * so a resumed run binds the same values a continuing one would: decimals keep their precision,
+ * binary keys their bytes and temporal keys their driver type.
+ *
+ * <p>The run itself is recorded in {@value #RUN_FILE} under the index path and removed when
+ * {@code buildIndex} succeeds. A restarted ingest of the same tables continues that run: shards
+ * it completed are skipped and a shard with a checkpoint reopens its index and continues after
+ * the last committed key.
+ */
+final class IngestCheckpoint {
+
+    static final String RUN_FILE = "ingest-run.properties";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestCheckpoint.class);
+    private static final String RUN = "ingest_run";
+    private static final String STATE = "ingest_state";
+    private static final String DONE = "ingest_done";
+    private static final String TABLE = "ingest_table";
+    private static final String LAST_KEY = "ingest_last_key";
+    private static final String ROWS = "ingest_rows";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String COMPLETE = "complete";
+
+    private final String run;
+    private final boolean resumed;
+    private final long intervalNanos;
+    private final Map<String, Long> done = new LinkedHashMap<>();
+    private String table;
+    private List<Object> lastKey;
+    private int[] keyTypes;
+    private long rows;
+    private boolean complete;
+    private long committedAt = System.nanoTime();
+
+    private IngestCheckpoint(String run, boolean resumed, int intervalSeconds) {
+        this.run = run;
+        this.resumed = resumed;
+        this.intervalNanos = intervalSeconds > 0 ? TimeUnit.SECONDS.toNanos(intervalSeconds) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the id of the run to continue: the recorded one if {@code resume} is set and it
+     * covered the same {@code selection} of tables, otherwise a new one, recorded in its place.
+     */
+    static String startRun(Path indexPath, String selection, boolean resume) throws IOException {
+        Path file = indexPath.resolve(RUN_FILE);
+        if (resume && Files.exists(file)) {
+            Properties recorded = new Properties();
+            try (InputStream input = Files.newInputStream(file)) {
+                recorded.load(input);
+            }
+            String run = recorded.getProperty("run");
+            if (run != null && selection.equals(recorded.getProperty("tables"))) {
+                LOGGER.info("Resuming ingest run {}", run);
+                return run;
+            }
+        }
+        String run = Long.toString(System.currentTimeMillis());
+        Properties properties = new Properties();
+        properties.setProperty("run", run);
+        properties.setProperty("tables", selection);
+        try (OutputStream output = Files.newOutputStream(file)) {
+            properties.store(output, "Ingest in progress; removed when it completes");
+        }
+        return run;
+    }
+
+    static void finishRun(Path indexPath) throws IOException {
+        Files.deleteIfExists(indexPath.resolve(RUN_FILE));
+    }
+
+    /**
+     * The progress {@code run} recorded in the shard at {@code directory}, or a fresh checkpoint
+     * when the shard holds no commit of that run.
+     */
+    static IngestCheckpoint open(Directory directory, String run, int intervalSeconds) throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return new IngestCheckpoint(run, false, intervalSeconds);
+        }
+        Map<String, String> userData = SegmentInfos.readLatestCommit(directory).getUserData();
+        if (!run.equals(userData.get(RUN))) {
+            return new IngestCheckpoint(run, false, intervalSeconds);
+        }
+        IngestCheckpoint checkpoint = new IngestCheckpoint(run, true, intervalSeconds);
+        checkpoint.done.putAll(read(userData.get(DONE), new TypeReference<Map<String, Long>>() {}, Map.of()));
+        checkpoint.complete = COMPLETE.equals(userData.get(STATE));
+        checkpoint.table = userData.get(TABLE);
+        String lastKey = userData.get(LAST_KEY);
+        if (lastKey != null) {
+            List<?> encoded = JsonUtil.MAPPER.readValue(lastKey, List.class);
+            checkpoint.lastKey = decodeKey(encoded);
+            checkpoint.keyTypes = keyTypes(encoded);
+        }
+        checkpoint.rows = Long.parseLong(userData.getOrDefault(ROWS, "0"));
+        return checkpoint;
+    }
+
+    /**
+     * Whether a commit is a finished build rather than a checkpoint. Commits without ingest user
+     * data, e.g. from indexes built before checkpoints existed, count as complete.
+     */
+    static boolean isComplete(IndexCommit commit) throws IOException {
+        return !CHECKPOINT.equals(commit.getUserData().get(STATE));
+    }
+
+    /**
+     * The newest complete commit of a shard, or {@code null} while its first build is running.
+     */
+    static IndexCommit latestComplete(Directory directory) throws IOException {
+        List<IndexCommit> commits = DirectoryReader.listCommits(directory);
+        for (int i = commits.size() - 1; i >= 0; i--) {
+            if (isComplete(commits.get(i))) {
+                return commits.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True when the shard's index belongs to this run and must be appended to, not recreated.
+     */
+    boolean resumed() {
+        return resumed;
+    }
+
+    boolean complete() {
+        return complete;
+    }
+
+    Map<String, Long> done() {
+        return done;
+    }
+
+    /**
+     * The key after which {@code table} continues, or {@code null} to read it from the start.
+     */
+    List<Object> resumeKey(String table) {
+        return table.equals(this.table) ? lastKey : null;
+    }
+
+    /**
+     * Rows of {@code table} indexed up to its {@link #resumeKey}.
+     */
+    long resumeRows(String table) {
+        return table.equals(this.table) ? rows : 0;
+    }
+
+    /**
+     * Records that {@code table} is indexed up to {@code lastKey}, whose values have the SQL
+     * {@code keyTypes}.
+     */
+    void progress(String table, List<Object> lastKey, int[] keyTypes, long rows) {
+        this.table = table;
+        this.lastKey = lastKey;
+        this.keyTypes = keyTypes;
+        this.rows = rows;
+    }
+
+    void tableDone(String table, long rows) {
+        done.put(table, rows);
+        this.table = null;
+        this.lastKey = null;
+        this.keyTypes = null;
+        this.rows = 0;
+    }
+
+    void markComplete() {
+        complete = true;
+        table = null;
+        lastKey = null;
+        keyTypes = null;
+    }
+
+    /**
+     * Whether the checkpoint interval has passed since the last commit.
+     */
+    boolean due() {
+        return System.nanoTime() - committedAt >= intervalNanos;
+    }
+
+    /**
+     * Commit user data for the current progress; call right before committing.
+     */
+    Map<String, String> userData() {
+        committedAt = System.nanoTime();
+        Map<String, String> userData = new HashMap<>();
+        userData.put(RUN, run);
+        userData.put(STATE, complete ? COMPLETE : CHECKPOINT);
+        userData.put(DONE, write(done));
+        if (table != null && lastKey != null) {
+            userData.put(TABLE, table);
+            userData.put(LAST_KEY, write(encodeKey(lastKey, keyTypes)));
+            userData.put(ROWS, Long.toString(rows));
+        }
+        return userData;
+    }
+
+    /**
+     * Encodes a key for the commit user data: per value its SQL type name ({@code type}), the
+     * Java class it was read as ({@code class}) and a lossless text form ({@code value}), e.g.
+     * {@code {"type":"DECIMAL","class":"decimal","value":"12.50"}}. Binary values are base64,
+     * temporal values ISO-8601 local date-times, dates and times as the driver's JVM-local view
+     * of them.
+     */
+    static List<Map<String, Object>> encodeKey(List<Object> key, int[] types) {
+        List<Map<String, Object>> encoded = new ArrayList<>(key.size());
+        for (int i = 0; i < key.size(); i++) {
+            Object value = key.get(i) instanceof Integer || key.get(i) instanceof Short || key.get(i) instanceof Byte
+                    ? ((Number) key.get(i)).longValue()
+                    : key.get(i);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("type", types != null && i < types.length ? typeName(types[i]) : null);
+            String kind = switch (value) {
+                case null -> "null";
+                case Long ignored -> "long";
+                case BigInteger ignored -> "big_integer";
+                case BigDecimal ignored -> "decimal";
+                case Double ignored -> "double";
+                case Float ignored -> "float";
+                case Boolean ignored -> "boolean";
+                case String ignored -> "string";
+                case byte[] ignored -> "bytes";
+                case Timestamp ignored -> "timestamp";
+                case java.sql.Date ignored -> "date";
+                case Time ignored -> "time";
+                case LocalDateTime ignored -> "local_date_time";
+                case LocalDate ignored -> "local_date";
+                case LocalTime ignored -> "local_time";
+                case OffsetDateTime ignored -> "offset_date_time";
+                case Instant ignored -> "instant";
+                case UUID ignored -> "uuid";
+                default -> {
+                    LOGGER.warn("Checkpointing key value of {} as text", value.getClass().getName());
+                    yield "string";
+                }
+            };
+            entry.put("class", kind);
+            entry.put("value", switch (value) {
+                case null -> null;
+                case BigDecimal decimal -> decimal.toString();
+                case byte[] bytes -> Base64.getEncoder().encodeToString(bytes);
+                case Timestamp timestamp -> timestamp.toLocalDateTime().toString();
+                case java.sql.Date date -> date.toLocalDate().toString();
+                case Time time -> Long.toString(time.getTime());
+                default -> value.toString();
+            });
+            encoded.add(entry);
+        }
+        return encoded;
+    }
+
+    /**
+     * Rebuilds a key written by {@link #encodeKey} with the Java classes it was read as. Plain
+     * values, as written by earlier versions, are returned as they are.
+     */
+    static List<Object> decodeKey(List<?> encoded) {
+        List<Object> key = new ArrayList<>(encoded.size());
+        for (Object element : encoded) {
+            if (!(element instanceof Map<?, ?> entry)) {
+                key.add(element);
+                continue;
+            }
+            Object kind = entry.get("class");
+            String text = (String) entry.get("value");
+            key.add(text == null ? null : switch (String.valueOf(kind)) {
+                case "long" -> Long.parseLong(text);
+                case "big_integer" -> new BigInteger(text);
+                case "decimal" -> new BigDecimal(text);
+                case "double" -> Double.parseDouble(text);
+                case "float" -> Float.parseFloat(text);
+                case "boolean" -> Boolean.parseBoolean(text);
+                case "string" -> text;
+                case "bytes" -> Base64.getDecoder().decode(text);
+                case "timestamp" -> Timestamp.valueOf(LocalDateTime.parse(text));
+                case "date" -> java.sql.Date.valueOf(LocalDate.parse(text));
+                case "time" -> new Time(Long.parseLong(text));
+                case "local_date_time" -> LocalDateTime.parse(text);
+                case "local_date" -> LocalDate.parse(text);
+                case "local_time" -> LocalTime.parse(text);
+                case "offset_date_time" -> OffsetDateTime.parse(text);
+                case "instant" -> Instant.parse(text);
+                case "uuid" -> UUID.fromString(text);
+                default -> throw new IllegalArgumentException("Unknown key value class in checkpoint: " + kind);
+            });
+        }
+        return key;
+    }
+
+    private static int[] keyTypes(List<?> encoded) {
+        int[] types = new int[encoded.size()];
+        for (int i = 0; i < types.length; i++) {
+            Object type = encoded.get(i) instanceof Map<?, ?> entry ? entry.get("type") : null;
+            types[i] = type == null ? Types.OTHER : typeCode(type.toString());
+        }
+        return types;
+    }
+
+    private static String typeName(int type) {
+        try {
+            return JDBCType.valueOf(type).getName();
+        } catch (IllegalArgumentException e) {
+            return Integer.toString(type);
+        }
+    }
+
+    private static int typeCode(String name) {
+        try {
+            return JDBCType.valueOf(name).getVendorTypeNumber();
+        } catch (IllegalArgumentException e) {
+            return Types.OTHER;
+        }
+    }
+
+    private static <T> T read(String json, TypeReference<T> type, T fallback) throws IOException {
+        return json == null ? fallback : JsonUtil.MAPPER.readValue(json, type);
+    }
+
+    private static String write(Object value) {
+        try {
+            return JsonUtil.MAPPER.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode ingest checkpoint", e);
+        }
+    }
+
+    /**
+     * Keeps the newest commit and the newest complete commit and deletes the rest, so a shard
+     * being rebuilt stays servable from its previous build.
+     */
+    static final class DeletionPolicy extends IndexDeletionPolicy {
+
+        @Override
+        public void onInit(List<? extends IndexCommit> commits) throws IOException {
+            onCommit(commits);
+        }
+
+        @Override
+        public void onCommit(List<? extends IndexCommit> commits) throws IOException {
+            if (commits.isEmpty()) {
+                return;
+            }
+            IndexCommit newest = commits.get(commits.size() - 1);
+            IndexCommit newestComplete = null;
+            for (int i = commits.size() - 1; i >= 0 && newestComplete == null; i--) {
+                if (isComplete(commits.get(i))) {
+                    newestComplete = commits.get(i);
+                }
+            }
+            List<IndexCommit> obsolete = new ArrayList<>();
+            for (IndexCommit commit : commits) {
+                if (commit != newest && commit != newestComplete) {
+                    obsolete.add(commit);
+                }
+            }
+            obsolete.forEach(IndexCommit::delete);
+        }
+    }
+}
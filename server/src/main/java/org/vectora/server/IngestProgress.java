@@ -0,0 +1,93 @@
+package org.vectora.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks a background ingest table by table, and refreshes the {@link LuceneService} after every
+ * committed shard so finished tables are served while the rest are still being built.
+ */
+public final class IngestProgress implements LuceneIndexer.Listener {
+
+    public enum State { PENDING, INDEXING, INDEXED, COMMITTED, SKIPPED, FAILED }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestProgress.class);
+
+    private final LuceneService luceneService;
+    private final Map<String, State> tables = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private volatile String error;
+
+    public IngestProgress(LuceneService luceneService) {
+        this.luceneService = luceneService;
+    }
+
+    public void started() {
+        running = true;
+        error = null;
+    }
+
+    public void finished(Exception failure) {
+        running = false;
+        error = failure == null ? null : failure.getMessage();
+    }
+
+    public boolean running() {
+        return running;
+    }
+
+    public String error() {
+        return error;
+    }
+
+    /**
+     * State of every table the current ingest covers, in table name order.
+     */
+    public Map<String, State> tables() {
+        Map<String, State> sorted = new LinkedHashMap<>();
+        tables.keySet().stream().sorted().forEach(table -> sorted.put(table, tables.get(table)));
+        return sorted;
+    }
+
+    @Override
+    public void tablesPlanned(Collection<String> planned) {
+        planned.forEach(table -> tables.put(table, State.PENDING));
+    }
+
+    @Override
+    public void tableStarted(String table) {
+        tables.put(table, State.INDEXING);
+    }
+
+    @Override
+    public void tableIndexed(String table, long rows) {
+        tables.put(table, State.INDEXED);
+    }
+
+    @Override
+    public void tableSkipped(String table, String reason) {
+        tables.put(table, State.SKIPPED);
+    }
+
+    @Override
+    public void shardCommitted(String shard, List<String> shardTables) {
+        shardTables.forEach(table -> tables.computeIfPresent(table,
+                (key, state) -> state == State.SKIPPED ? state : State.COMMITTED));
+        try {
+            luceneService.refresh();
+        } catch (Exception e) {
+            LOGGER.warn("Refresh after shard {} failed: {}", shard, e.getMessage());
+        }
+    }
+
+    @Override
+    public void shardFailed(String shard, List<String> shardTables, Exception failure) {
+        shardTables.forEach(table -> tables.put(table, State.FAILED));
+    }
+}
@@ -0,0 +1,376 @@
+package org.vectora.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces ingest so full-table scans stay within what the source database can absorb. Ingest
+ * workers report every {@link #REPORT_ROWS} rows with the time spent waiting on the driver for
+ * them; once a second the throttle compares the mean time to fetch
+ * {@link LuceneIndexer#FETCH_SIZE} rows, and the replication lag reported by {@code lag_query}
+ * when that check is configured, against the budget. Over budget, the allowed row rate drops to
+ * 70% of what was just achieved and one fewer table is read at a time. Below 75% of it,
+ * parallelism first grows back one table a second up to {@code lucene.ingest_threads}, then the
+ * rate limit grows by 20% a second up to {@code max_rows_per_second}, or, without that ceiling,
+ * until it no longer binds and is lifted. The lag query runs on one worker at a time outside the
+ * throttle's lock, so a slow source does not hold up the other workers' reports.
+ *
+ * <p>Workers wait out the rate limit between reports. A pause or a lower parallelism takes
+ * effect within {@link #REPORT_ROWS} rows: {@link #afterFetch} tells the worker to stop, and it
+ * closes its source query after the row in hand before waiting in {@link #yieldTurn}, so no
+ * cursor or read view is held open on the source meanwhile. {@link #pause()} and
+ * {@link #resume()} work whether or not adaptive control is enabled.
+ */
+public final class IngestThrottle {
+
+    /**
+     * Opens a connection to the source for replication lag queries.
+     */
+    interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    /** Rows between two {@link #afterFetch} calls of a worker. */
+    static final int REPORT_ROWS = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestThrottle.class);
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long PAUSE_FILE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double DECREASE_FACTOR = 0.7;
+    private static final double INCREASE_FACTOR = 1.2;
+    private static final double HEADROOM = 0.75;
+    private static final double MIN_RATE = 50;
+
+    private final AppConfig.ThrottleConfig config;
+    private final long maxFetchNanos;
+    private final Path pauseFile;
+
+    private final Object lagLock = new Object();
+    private volatile ConnectionSource lagSource;
+    private Connection lagConnection;
+    private int maxParallelism = 1;
+    private int active;
+    private long nextFreeNanos;
+    private long windowStart;
+    private long windowRows;
+    private long windowFetchNanos;
+    private long lastLagCheck;
+    private long lastPauseFileCheck;
+
+    private volatile int parallelism = 1;
+    private volatile double rate;
+    private volatile double fetchMillis;
+    private volatile long lagSeconds = -1;
+    private volatile boolean paused;
+    private volatile boolean pausedByFile;
+
+    public IngestThrottle(AppConfig.ThrottleConfig config) {
+        this.config = config;
+        this.maxFetchNanos = TimeUnit.MILLISECONDS.toNanos(config.maxFetchMs());
+        this.pauseFile = config.pauseFile() == null ? null : Path.of(config.pauseFile());
+    }
+
+    /**
+     * Stops every ingest worker at its next report until {@link #resume()}.
+     */
+    public void pause() {
+        paused = true;
+        LOGGER.info("Ingest paused");
+    }
+
+    public synchronized void resume() {
+        paused = false;
+        resetWindow(System.nanoTime());
+        notifyAll();
+        LOGGER.info("Ingest resumed");
+    }
+
+    public boolean paused() {
+        return paused || pausedByFile;
+    }
+
+    /**
+     * Current controller state, for {@code /ingest/throttle}.
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", config.enabled());
+        status.put("paused", paused());
+        status.put("active_tables", active);
+        status.put("parallelism", parallelism);
+        status.put("max_parallelism", maxParallelism);
+        status.put("rate_limit_rows_per_second", Math.round(rate));
+        status.put("fetch_ms", Math.round(fetchMillis * 10) / 10.0);
+        status.put("replication_lag_seconds", lagSeconds);
+        return status;
+    }
+
+    public double rateLimit() {
+        return rate;
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public double fetchMillis() {
+        return fetchMillis;
+    }
+
+    public long lagSeconds() {
+        return lagSeconds;
+    }
+
+    /**
+     * Starts controlling one index build that reads up to {@code maxParallelism} tables at once.
+     */
+    synchronized void begin(int maxParallelism, ConnectionSource lagSource) {
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.parallelism = this.maxParallelism;
+        this.rate = Math.max(0, config.maxRowsPerSecond());
+        this.lagSource = lagSource;
+        this.active = 0;
+        this.nextFreeNanos = 0;
+        this.lagSeconds = -1;
+        resetWindow(System.nanoTime());
+    }
+
+    synchronized void end() {
+        lagSource = null;
+        synchronized (lagLock) {
+            closeLagConnection();
+        }
+    }
+
+    /**
+     * Waits for a free table slot, then counts the caller as reading a table.
+     */
+    synchronized void enter() throws InterruptedIOException {
+        awaitTurn();
+        if (active++ == 0) {
+            resetWindow(System.nanoTime());
+        }
+    }
+
+    synchronized void exit() {
+        active--;
+        notifyAll();
+    }
+
+    /**
+     * Records {@code rows} rows whose fetch took {@code fetchNanos}, then holds the caller as
+     * long as the rate limit requires.
+     *
+     * @return true when a pause or a reduced parallelism requires the caller to stop reading: it
+     *         should release its source query, then call {@link #yieldTurn}
+     */
+    boolean afterFetch(int rows, long fetchNanos) throws InterruptedIOException {
+        long wait;
+        ConnectionSource checkLagWith = null;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (config.enabled() && !paused()) {
+                windowRows += rows;
+                windowFetchNanos += fetchNanos;
+                if (now - windowStart >= ADJUST_INTERVAL_NANOS) {
+                    adjust(now);
+                }
+                if (lagDue(now)) {
+                    checkLagWith = lagSource;
+                }
+            }
+            checkPauseFile(now);
+            wait = reserve(rows, now);
+        }
+        if (checkLagWith != null) {
+            checkLag(checkLagWith);
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+        }
+        synchronized (this) {
+            return paused() || active > parallelism;
+        }
+    }
+
+    /**
+     * Gives up the caller's table slot while ingest is paused or reads more tables than allowed,
+     * and waits until it may continue.
+     */
+    synchronized void yieldTurn() throws InterruptedIOException {
+        if (paused() || active > parallelism) {
+            active--;
+            notifyAll();
+            awaitTurn();
+            active++;
+        }
+    }
+
+    private void awaitTurn() throws InterruptedIOException {
+        while (paused() || active >= parallelism) {
+            try {
+                wait(TimeUnit.NANOSECONDS.toMillis(PAUSE_FILE_CHECK_NANOS));
+            } catch (InterruptedException e) {
+                throw interrupted(e);
+            }
+            checkPauseFile(System.nanoTime());
+        }
+    }
+
+    private void adjust(long now) {
+        double seconds = (now - windowStart) / 1e9;
+        double observed = windowRows / seconds;
+        long meanFetch = windowRows == 0 ? 0 : windowFetchNanos * LuceneIndexer.FETCH_SIZE / windowRows;
+        fetchMillis = meanFetch / 1e6;
+        resetWindow(now);
+
+        int maxLag = config.maxReplicationLagSeconds();
+        boolean overBudget = meanFetch > maxFetchNanos || maxLag > 0 && lagSeconds > maxLag;
+        boolean headroom = meanFetch < maxFetchNanos * HEADROOM && (maxLag <= 0 || lagSeconds < maxLag * HEADROOM);
+        double ceiling = config.maxRowsPerSecond() > 0 ? config.maxRowsPerSecond() : Double.MAX_VALUE;
+        if (overBudget) {
+            double base = rate > 0 ? Math.min(rate, observed) : observed;
+            rate = Math.max(MIN_RATE, base * DECREASE_FACTOR);
+            parallelism = Math.max(1, parallelism - 1);
+            LOGGER.info("Ingest over budget (fetch {} ms, lag {} s): limiting to {} rows/s, {} tables at once",
+                    Math.round(fetchMillis), lagSeconds, Math.round(rate), parallelism);
+        } else if (headroom && parallelism < maxParallelism) {
+            parallelism++;
+            notifyAll();
+            LOGGER.info("Ingest within budget: reading {} tables at once", parallelism);
+        } else if (headroom && rate > 0 && rate < ceiling) {
+            rate = Math.min(ceiling, rate * INCREASE_FACTOR);
+            if (rate > observed * 2 && ceiling == Double.MAX_VALUE) {
+                rate = 0;
+                LOGGER.info("Ingest within budget: rate limit lifted");
+            }
+        }
+    }
+
+    private void resetWindow(long now) {
+        windowStart = now;
+        windowRows = 0;
+        windowFetchNanos = 0;
+    }
+
+    /**
+     * Reserves time for {@code rows} at the current rate and returns how long to wait first.
+     */
+    private long reserve(int rows, long now) {
+        double current = rate;
+        if (current <= 0) {
+            return 0;
+        }
+        long start = Math.max(now, nextFreeNanos);
+        nextFreeNanos = start + (long) (rows * 1e9 / current);
+        return start - now;
+    }
+
+    private void checkPauseFile(long now) {
+        if (pauseFile == null || now - lastPauseFileCheck < PAUSE_FILE_CHECK_NANOS) {
+            return;
+        }
+        lastPauseFileCheck = now;
+        boolean exists = Files.exists(pauseFile);
+        if (exists != pausedByFile) {
+            pausedByFile = exists;
+            resetWindow(now);
+            LOGGER.info(exists ? "Ingest paused: {} exists" : "Ingest resumed: {} removed", pauseFile);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Whether a replication lag check is due; if so, claims it for the caller by moving the last
+     * check time, so only one worker runs it.
+     */
+    private boolean lagDue(long now) {
+        if (config.maxReplicationLagSeconds() <= 0 || lagSource == null
+                || now - lastLagCheck < TimeUnit.SECONDS.toNanos(config.lagCheckSeconds())) {
+            return false;
+        }
+        lastLagCheck = now;
+        return true;
+    }
+
+    /**
+     * Runs the lag query and publishes its result for the next {@link #adjust}. Called without
+     * holding the throttle's lock.
+     */
+    private void checkLag(ConnectionSource source) {
+        synchronized (lagLock) {
+            // The build may have ended while this worker was on its way here.
+            if (lagSource != source) {
+                return;
+            }
+            try {
+                if (lagConnection == null) {
+                    lagConnection = source.open();
+                }
+                try (Statement statement = lagConnection.createStatement()) {
+                    statement.setQueryTimeout(config.lagCheckSeconds());
+                    try (ResultSet rs = statement.executeQuery(config.lagQuery())) {
+                        lagSeconds = rs.next() ? lag(rs) : 0;
+                    }
+                }
+            } catch (SQLException e) {
+                LOGGER.warn("Replication lag query failed: {}", e.getMessage());
+                lagSeconds = -1;
+                closeLagConnection();
+            }
+        }
+    }
+
+    /**
+     * {@code Seconds_Behind_Source} (or {@code _Master}) of a replica status row, otherwise the
+     * first column; -1 when it is NULL, i.e. replication is not running.
+     */
+    private static long lag(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int column = 1;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                column = i;
+                break;
+            }
+        }
+        long lag = rs.getLong(column);
+        return rs.wasNull() ? -1 : lag;
+    }
+
+    private void closeLagConnection() {
+        if (lagConnection == null) {
+            return;
+        }
+        try {
+            lagConnection.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Closing lag connection failed: {}", e.getMessage());
+        }
+        lagConnection = null;
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException io = new InterruptedIOException("Interrupted while ingest was throttled");
+        io.initCause(e);
+        return io;
+    }
+}
@@ -0,0 +1,45 @@
+package org.vectora.server;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ingest rate control: {@code GET /ingest/throttle} reports the throttle state, {@code POST
+ * /ingest/pause} and {@code POST /ingest/resume} stop and restart a running ingest at its next
+ * batch boundary. Both POSTs answer with the new state. The POSTs are only mapped in the admin
+ * context, so they are reachable on {@code server.admin_port} alone.
+ */
+public class IngestThrottleServlet extends HttpServlet {
+
+    private final IngestThrottle throttle;
+
+    public IngestThrottleServlet(IngestThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setHeader("Cache-Control", "no-store");
+        JsonUtil.writeJson(resp, HttpServletResponse.SC_OK, throttle.status());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        switch (req.getServletPath()) {
+            case "/pause" -> throttle.pause();
+            case "/resume" -> throttle.resume();
+            default -> {
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("error", "POST /ingest/pause or /ingest/resume on the admin port");
+                JsonUtil.writeJson(resp, HttpServletResponse.SC_METHOD_NOT_ALLOWED, payload);
+                return;
+            }
+        }
+        doGet(req, resp);
+    }
+}
@@ -1,7 +1,9 @@
 package org.vectora.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
@@ -9,19 +11,48 @@ public final class JsonUtil {
 
     public static final ObjectMapper MAPPER = new ObjectMapper();
 
+    private static final Metrics.Histogram ENCODE_TIME = Metrics.phase("json_encode");
+    private static final Metrics.Histogram WRITE_TIME = Metrics.phase("response_write");
+
     private JsonUtil() {}
 
     public static void writeJson(HttpServletResponse response, int status, Object payload) throws IOException {
-        response.setStatus(status);
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        MAPPER.writeValue(response.getWriter(), payload);
+        write(response, status, MAPPER.writer(), payload);
     }
 
     public static void writePrettyJson(HttpServletResponse response, int status, Object payload) throws IOException {
+        write(response, status, MAPPER.writerWithDefaultPrettyPrinter(), payload);
+    }
+
+    /**
+     * Encodes the payload up front, then writes it, so encoding and the network write are timed
+     * separately.
+     */
+    private static void write(HttpServletResponse response, int status, ObjectWriter writer, Object payload)
+            throws IOException {
+        long encodeStart = System.nanoTime();
+        byte[] body = writer.writeValueAsBytes(payload);
+        ENCODE_TIME.observeSince(encodeStart);
+
+        long writeStart = System.nanoTime();
         response.setStatus(status);
         response.setContentType("application/json");
         response.setCharacterEncoding("UTF-8");
-        MAPPER.writerWithDefaultPrettyPrinter().writeValue(response.getWriter(), payload);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        WRITE_TIME.observeSince(writeStart);
+    }
+
+    /**
+     * Writes pretty-printed JSON, as search and lookup responses always were, or compact JSON when
+     * the request carries {@code pretty=false}.
+     */
+    public static void writeJson(HttpServletRequest request, HttpServletResponse response, int status,
+                                 Object payload) throws IOException {
+        if ("false".equalsIgnoreCase(request.getParameter("pretty"))) {
+            writeJson(response, status, payload);
+        } else {
+            writePrettyJson(response, status, payload);
+        }
     }
 }
@@ -3,85 +3,418 @@ package org.vectora.server;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.codecs.lucene99.Lucene99Codec;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
-import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
-import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class LuceneIndexer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexer.class);
+    private static final AtomicInteger ACTIVE_TABLES = new AtomicInteger();
+    private static final Metrics.Counter TABLES_COMPLETED = Metrics.counter("ingest_tables_completed_total",
+            "Tables fully indexed since startup", null, null);
+
+    static {
+        Metrics.gauge("ingest_tables_in_progress", "Tables currently being indexed", ACTIVE_TABLES::get);
+    }
+
+    /**
+     * Number of tables being indexed by this process right now.
+     */
+    public static int activeTables() {
+        return ACTIVE_TABLES.get();
+    }
+
+    /**
+     * Callbacks for ingest progress. Shard callbacks run on the thread that built the shard; a
+     * committed shard is immediately visible to {@link LuceneService#refresh()}.
+     */
+    public interface Listener {
+        Listener NONE = new Listener() {};
+
+        default void tablesPlanned(Collection<String> tables) {}
+
+        default void tableStarted(String table) {}
+
+        default void tableIndexed(String table, long rows) {}
+
+        default void tableSkipped(String table, String reason) {}
+
+        default void shardCommitted(String shard, List<String> tables) {}
+
+        default void shardFailed(String shard, List<String> tables, Exception error) {}
+    }
+
+    static final int FETCH_SIZE = 500;
+    /** Rows the driver transfers at a time within one query (a server-side cursor on MySQL). */
+    private static final int CURSOR_ROWS = 100;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Listener listener;
+    private final IngestThrottle throttle;
+
+    public LuceneIndexer() {
+        this(Listener.NONE);
+    }
+
+    public LuceneIndexer(Listener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * @param throttle paces reads from the source; {@code null} builds one from
+     *                 {@code ingest.throttle} for each {@link #buildIndex} call
+     */
+    public LuceneIndexer(Listener listener, IngestThrottle throttle) {
+        this.listener = listener;
+        this.throttle = throttle;
+    }
 
     public void buildIndex(AppConfig config) throws IOException, SQLException {
+        buildIndex(config, List.of());
+    }
+
+    /**
+     * Rebuilds the shards holding {@code onlyTables}, or every shard when the collection is empty.
+     * Each shard is a standalone index directory under {@code lucene.index_path}; shards are
+     * written independently and, with {@code lucene.ingest_threads > 1}, in parallel. Progress is
+     * checkpointed (see {@link IngestCheckpoint}), so after a failure the same call continues
+     * where the failed one stopped.
+     */
+    public void buildIndex(AppConfig config, Collection<String> onlyTables) throws IOException, SQLException {
         validateConfig(config);
         Path indexPath = Path.of(config.lucene().indexPath());
         Files.createDirectories(indexPath);
 
-        try (Directory directory = FSDirectory.open(indexPath);
-             Analyzer analyzer = new StandardAnalyzer();
-             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
-                     .setOpenMode(IndexWriterConfig.OpenMode.CREATE))) {
-
-            try (Connection connection = DriverManager.getConnection(
-                    config.mysql().jdbcUrl(),
-                    config.mysql().username(),
-                    config.mysql().password())) {
-                DatabaseMetaData metaData = connection.getMetaData();
-                List<String> tableNames = loadTableNames(metaData, connection.getCatalog());
-                for (String tableName : tableNames) {
-                    indexTable(connection, metaData, tableName, writer);
+        List<String> tableNames = List.of();
+        if (hasDatabase(config)) {
+            try (Connection connection = openConnection(config)) {
+                tableNames = loadTableNames(connection.getMetaData(), connection.getCatalog(), connection.getSchema());
+            }
+        }
+
+        Map<String, List<String>> layout = shardLayout(tableNames, config.lucene().shardGroups());
+        for (AppConfig.FileSource source : config.ingest().files()) {
+            if (layout.containsKey(source.id()) || tableNames.contains(source.id())) {
+                throw new IllegalArgumentException("File source " + source.id() + " has the name of a table or shard");
+            }
+            layout.put(source.id(), List.of(source.id()));
+        }
+        boolean fullRebuild = onlyTables == null || onlyTables.isEmpty();
+        Map<String, List<String>> selected = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> shard : layout.entrySet()) {
+            if (fullRebuild || shard.getValue().stream().anyMatch(onlyTables::contains)) {
+                selected.put(shard.getKey(), shard.getValue());
+            }
+        }
+        if (!fullRebuild && selected.isEmpty()) {
+            throw new IllegalArgumentException("No tables matched: " + String.join(",", onlyTables));
+        }
+
+        listener.tablesPlanned(selected.values().stream().flatMap(List::stream).toList());
+        int threads = Math.max(1, Math.min(config.lucene().ingestThreads(), selected.size()));
+        String selection = fullRebuild ? "*" : String.join(",", onlyTables.stream().sorted().toList());
+        String run = IngestCheckpoint.startRun(indexPath, selection, config.ingest().resume());
+        IngestThrottle pacing = throttle != null ? throttle : new IngestThrottle(config.ingest().throttle());
+        pacing.begin(threads, () -> openConnection(config));
+        try {
+            if (threads == 1) {
+                for (Map.Entry<String, List<String>> shard : selected.entrySet()) {
+                    buildShard(config, indexPath.resolve(shard.getKey()), shard.getKey(), shard.getValue(),
+                            pacing, run);
+                }
+            } else {
+                buildShardsInParallel(config, indexPath, selected, threads, pacing, run);
+            }
+        } finally {
+            pacing.end();
+        }
+
+        if (fullRebuild) {
+            removeStaleShards(indexPath, layout.keySet());
+            removeRootIndex(indexPath);
+        }
+        IngestCheckpoint.finishRun(indexPath);
+    }
+
+    /**
+     * Maps each table to the shard that holds it: the configured group name, or the table itself.
+     */
+    static Map<String, List<String>> shardLayout(List<String> tableNames, Map<String, List<String>> groups) {
+        Map<String, String> groupByTable = new HashMap<>();
+        if (groups != null) {
+            for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+                for (String table : group.getValue()) {
+                    groupByTable.put(table, group.getKey());
+                }
+            }
+        }
+        Map<String, List<String>> layout = new LinkedHashMap<>();
+        for (String table : tableNames) {
+            String shard = groupByTable.getOrDefault(table, table);
+            layout.computeIfAbsent(shard, key -> new ArrayList<>()).add(table);
+        }
+        return layout;
+    }
+
+    private void buildShardsInParallel(AppConfig config, Path indexPath, Map<String, List<String>> shards,
+                                       int threads, IngestThrottle pacing, String run)
+            throws IOException, SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, List<String>> shard : shards.entrySet()) {
+                futures.add(executor.submit(() -> {
+                    buildShard(config, indexPath.resolve(shard.getKey()), shard.getKey(), shard.getValue(), pacing, run);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    futures.forEach(pending -> pending.cancel(true));
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException io) {
+                        throw io;
+                    }
+                    if (cause instanceof SQLException sql) {
+                        throw sql;
+                    }
+                    throw new IllegalStateException("Shard build failed", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while building shards", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds one shard, or finishes it when {@code run} already checkpointed it. The writer does
+     * not commit on close, so a failure leaves the shard at its last checkpoint. The shard of an
+     * incremental file source is updated in place rather than rebuilt.
+     */
+    private void buildShard(AppConfig config, Path shardPath, String shard, List<String> tables,
+                            IngestThrottle pacing, String run) throws IOException, SQLException {
+        Files.createDirectories(shardPath);
+        try (Directory directory = FSDirectory.open(shardPath)) {
+            IngestCheckpoint checkpoint = IngestCheckpoint.open(directory, run, config.ingest().checkpointSeconds());
+            if (checkpoint.complete()) {
+                LOGGER.info("Shard {} was built by this ingest run; skipping", shard);
+                checkpoint.done().forEach(listener::tableIndexed);
+                listener.shardCommitted(shard, tables);
+                return;
+            }
+            if (checkpoint.resumed()) {
+                LOGGER.info("Resuming shard {} (tables done: {})", shard, checkpoint.done().keySet());
+            }
+            AppConfig.FileSource files = fileSource(config, shard);
+            IndexWriterConfig.OpenMode openMode = checkpoint.resumed()
+                    ? IndexWriterConfig.OpenMode.APPEND
+                    : files != null && files.incremental()
+                            ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND
+                            : IndexWriterConfig.OpenMode.CREATE;
+            try (Analyzer analyzer = new StandardAnalyzer();
+                 IndexWriter writer = new IndexWriter(directory, writerConfig(config.lucene().writer(), analyzer)
+                         .setOpenMode(openMode)
+                         .setIndexDeletionPolicy(new IngestCheckpoint.DeletionPolicy())
+                         .setCommitOnClose(false));
+                 Connection connection = files != null ? null : openConnection(config)) {
+                RowConverter.Buffers buffers = new RowConverter.Buffers(objectMapper);
+                for (String table : tables) {
+                    Long doneRows = checkpoint.done().get(table);
+                    if (doneRows != null) {
+                        listener.tableIndexed(table, doneRows);
+                    } else if (files != null) {
+                        indexFiles(files, config.ingest(), writer, checkpoint);
+                    } else {
+                        indexTable(connection, connection.getMetaData(), table, config.ingest(), writer, buffers,
+                                pacing, checkpoint);
+                    }
+                }
+                int segments = config.lucene().writer().forceMergeSegments();
+                if (segments > 0) {
+                    long start = System.nanoTime();
+                    writer.forceMerge(segments);
+                    LOGGER.info("Merged shard {} to at most {} segment(s) in {} ms",
+                            shard, segments, (System.nanoTime() - start) / 1_000_000);
+                }
+                checkpoint.markComplete();
+                commit(writer, checkpoint);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            listener.shardFailed(shard, tables, e);
+            throw e;
+        }
+        LOGGER.info("Built shard {} (tables: {})", shard, tables.size());
+        listener.shardCommitted(shard, tables);
+    }
+
+    /**
+     * Writer settings from {@code lucene.writer}; anything left unset keeps Lucene's default.
+     */
+    static IndexWriterConfig writerConfig(AppConfig.WriterConfig settings, Analyzer analyzer) {
+        IndexWriterConfig writerConfig = new IndexWriterConfig(analyzer);
+        if (settings.maxBufferedDocs() > 0) {
+            writerConfig.setMaxBufferedDocs(settings.maxBufferedDocs());
+        }
+        if (settings.ramBufferMb() > 0) {
+            writerConfig.setRAMBufferSizeMB(settings.ramBufferMb());
+        } else if (settings.maxBufferedDocs() > 0) {
+            writerConfig.setRAMBufferSizeMB(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+        }
+
+        if (settings.mergeThreads() > 0) {
+            ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler();
+            scheduler.setMaxMergesAndThreads(settings.mergeThreads() + 5, settings.mergeThreads());
+            writerConfig.setMergeScheduler(scheduler);
+        }
+
+        AppConfig.MergePolicyConfig merge = settings.mergePolicy();
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        if (merge.maxMergeAtOnce() > 0) {
+            mergePolicy.setMaxMergeAtOnce(Math.max(2, merge.maxMergeAtOnce()));
+        }
+        if (merge.segmentsPerTier() > 0) {
+            mergePolicy.setSegmentsPerTier(Math.max(2, merge.segmentsPerTier()));
+        }
+        if (merge.maxMergedSegmentMb() > 0) {
+            mergePolicy.setMaxMergedSegmentMB(merge.maxMergedSegmentMb());
+        }
+        if (merge.floorSegmentMb() > 0) {
+            mergePolicy.setFloorSegmentMB(merge.floorSegmentMb());
+        }
+        if (merge.deletesPctAllowed() > 0) {
+            mergePolicy.setDeletesPctAllowed(Math.min(50, Math.max(5, merge.deletesPctAllowed())));
+        }
+        writerConfig.setMergePolicy(mergePolicy);
+
+        if (settings.bestCompression()) {
+            writerConfig.setCodec(new Lucene99Codec(Lucene99Codec.Mode.BEST_COMPRESSION));
+        }
+        return writerConfig;
+    }
+
+    private void removeStaleShards(Path indexPath, Set<String> liveShards) throws IOException {
+        for (Path shard : LuceneService.shardPaths(indexPath)) {
+            if (liveShards.contains(shard.getFileName().toString())) {
+                continue;
+            }
+            LOGGER.info("Removing stale shard {}", shard.getFileName());
+            try (var walk = Files.walk(shard)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the files of an index left at the root of {@code index_path} by the single-directory
+     * layout, which the server no longer reads. Shard directories and the ingest run file stay.
+     */
+    private void removeRootIndex(Path indexPath) throws IOException {
+        if (!LuceneService.hasRootIndex(indexPath)) {
+            return;
+        }
+        LOGGER.info("Removing the old single-directory index at {}", indexPath);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(indexPath, Files::isRegularFile)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(IndexFileNames.SEGMENTS) || name.startsWith(IndexFileNames.PENDING_SEGMENTS)
+                        || name.equals(IndexWriter.WRITE_LOCK_NAME)
+                        || IndexFileNames.CODEC_FILE_PATTERN.matcher(name).matches()) {
+                    Files.delete(file);
                 }
             }
+        }
+    }
 
-            writer.commit();
+    private static AppConfig.FileSource fileSource(AppConfig config, String shard) {
+        for (AppConfig.FileSource source : config.ingest().files()) {
+            if (source.id().equals(shard)) {
+                return source;
+            }
         }
+        return null;
+    }
+
+    private Connection openConnection(AppConfig config) throws SQLException {
+        return DriverManager.getConnection(
+                config.mysql().jdbcUrl(),
+                config.mysql().username(),
+                config.mysql().password());
     }
 
     private void validateConfig(AppConfig config) {
         if (config == null) {
             throw new IllegalArgumentException("Config is required");
         }
+        if (!hasDatabase(config) && config.ingest().files().isEmpty()) {
+            throw new IllegalArgumentException("mysql config (url, or host, database, username, password) is required");
+        }
+    }
+
+    /**
+     * Whether a source database is configured; without one only file sources are ingested.
+     */
+    private static boolean hasDatabase(AppConfig config) {
         AppConfig.MysqlConfig mysql = config.mysql();
-        if (mysql == null || mysql.host() == null || mysql.database() == null
-                || mysql.username() == null || mysql.password() == null) {
-            throw new IllegalArgumentException("mysql config (host, database, username, password) is required");
+        if (mysql != null && mysql.url() != null) {
+            return true;
         }
+        return mysql != null && mysql.host() != null && mysql.database() != null
+                && mysql.username() != null && mysql.password() != null;
     }
 
-    private List<String> loadTableNames(DatabaseMetaData metaData, String catalog) throws SQLException {
+    /**
+     * Lists the tables of the connection's catalog and, for drivers with schemas (MySQL has none),
+     * its current schema, so system schemas of embedded databases are not ingested.
+     */
+    private List<String> loadTableNames(DatabaseMetaData metaData, String catalog, String schema) throws SQLException {
         List<String> tables = new ArrayList<>();
-        try (ResultSet rs = metaData.getTables(catalog, null, "%", new String[]{"TABLE"})) {
+        try (ResultSet rs = metaData.getTables(catalog, schema, "%", new String[]{"TABLE"})) {
             while (rs.next()) {
                 String name = rs.getString("TABLE_NAME");
                 if (name != null && !name.isBlank()) {
@@ -92,177 +425,242 @@ public class LuceneIndexer {
         return tables;
     }
 
+    private static void commit(IndexWriter writer, IngestCheckpoint checkpoint) throws IOException {
+        writer.setLiveCommitData(checkpoint.userData().entrySet());
+        writer.commit();
+    }
+
+    /**
+     * Reads {@code table} in primary-key order, {@link #FETCH_SIZE} rows per query, each query
+     * continuing after the last key of the one before (keyset pagination). Within a query rows
+     * arrive {@link #CURSOR_ROWS} at a time, so the driver never buffers a whole chunk. Between
+     * two queries the shard commits a checkpoint when one is due, so a restart continues from
+     * that key.
+     */
     private void indexTable(Connection connection, DatabaseMetaData metaData, String table,
-                            IndexWriter writer) throws SQLException, IOException {
-        List<String> primaryKeys = loadPrimaryKeys(metaData, connection.getCatalog(), table);
+                            AppConfig.IngestConfig ingest, IndexWriter writer, RowConverter.Buffers buffers,
+                            IngestThrottle pacing, IngestCheckpoint checkpoint) throws SQLException, IOException {
+        List<String> primaryKeys = loadPrimaryKeys(metaData, connection.getCatalog(), connection.getSchema(), table);
         if (primaryKeys.isEmpty()) {
             LOGGER.warn("Skipping table {} because it has no primary key", table);
+            listener.tableSkipped(table, "no primary key");
+            return;
+        }
+        AppConfig.TableSchema schema = ingest.schema(table);
+        if (schema != null && !schema.enabled()) {
+            LOGGER.info("Skipping table {} because indexing is disabled in the spec", table);
+            listener.tableSkipped(table, "disabled in spec");
             return;
         }
 
-        String sql = "SELECT * FROM `" + table + "`";
-        long rowCount = 0;
-        boolean hasCreatedAt = false;
-
-        try (Statement stmt = connection.createStatement()) {
-            stmt.setFetchSize(500);
-            try (ResultSet rs = stmt.executeQuery(sql)) {
-                ResultSetMetaData rsMeta = rs.getMetaData();
-                int columnCount = rsMeta.getColumnCount();
-                List<String> columnNames = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String name = rsMeta.getColumnLabel(i);
-                    if (name == null || name.isBlank()) {
-                        name = rsMeta.getColumnName(i);
-                    }
-                    columnNames.add(name);
-                    if ("created_at".equalsIgnoreCase(name)) {
-                        hasCreatedAt = true;
-                    }
-                }
+        List<Object> lastKey = checkpoint.resumeKey(table);
+        long rowCount = checkpoint.resumeRows(table);
+        if (lastKey != null) {
+            LOGGER.info("Resuming table {} after key {} ({} rows indexed)", table,
+                    IngestCheckpoint.encodeKey(lastKey, null).stream().map(part -> part.get("value")).toList(), rowCount);
+        }
+        String from = "SELECT " + selectList(metaData, connection, table, primaryKeys, schema) + " FROM " + quote(table);
+        String order = " ORDER BY " + String.join(", ", primaryKeys.stream().map(LuceneIndexer::quote).toList())
+                + " LIMIT " + FETCH_SIZE;
+        RowConverter converter = null;
+        Metrics.Counter rowsIndexed = Metrics.counter("ingest_rows_total", "Rows indexed per table", "table", table);
 
-                while (rs.next()) {
-                    String idValue = buildId(primaryKeys, rs);
-                    if (idValue == null) {
-                        continue;
+        pacing.enter();
+        ACTIVE_TABLES.incrementAndGet();
+        listener.tableStarted(table);
+        try (PreparedStatement first = connection.prepareStatement(from + order);
+             PreparedStatement next = connection.prepareStatement(from + " WHERE " + after(primaryKeys) + order)) {
+            first.setFetchSize(CURSOR_ROWS);
+            next.setFetchSize(CURSOR_ROWS);
+            int chunkRows;
+            int batchRows = 0;
+            long fetchNanos = 0;
+            boolean yielding = false;
+            do {
+                PreparedStatement stmt = lastKey == null ? first : next;
+                if (lastKey != null) {
+                    bindAfter(next, lastKey);
+                }
+                chunkRows = 0;
+                long fetchStart = System.nanoTime();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (yielding) {
+                        // Reopening the query after a yield is the throttle's doing; charging it as
+                        // fetch time would make every cut in parallelism look like a slow source.
+                        fetchStart = System.nanoTime();
+                        yielding = false;
                     }
-
-                    Map<String, Object> row = new LinkedHashMap<>();
-                    StringBuilder content = new StringBuilder();
-                    Instant createdAt = null;
-                    String createdAtRaw = null;
-
-                    for (int i = 1; i <= columnCount; i++) {
-                        String colName = columnNames.get(i - 1);
-                        Object value = rs.getObject(i);
-                        Object normalized = normalizeValue(value);
-                        row.put(colName, normalized);
-                        if (normalized != null) {
-                            content.append(normalized.toString()).append(' ');
+                    if (converter == null) {
+                        converter = new RowConverter(table, rs.getMetaData(), primaryKeys, ingest, buffers);
+                    }
+                    while (!yielding) {
+                        boolean more = rs.next();
+                        fetchNanos += System.nanoTime() - fetchStart;
+                        if (!more) {
+                            break;
                         }
-                        if ("created_at".equalsIgnoreCase(colName)) {
-                            createdAtRaw = normalized == null ? null : normalized.toString();
-                            createdAt = toInstant(value, createdAtRaw);
+                        chunkRows++;
+                        if (++batchRows == IngestThrottle.REPORT_ROWS) {
+                            yielding = pacing.afterFetch(batchRows, fetchNanos);
+                            batchRows = 0;
+                            fetchNanos = 0;
                         }
-                    }
-
-                    Document doc = new Document();
-                    doc.add(new StringField("doc_type", "row", Field.Store.YES));
-                    doc.add(new StringField("table", table, Field.Store.YES));
-                    doc.add(new StringField("id", idValue, Field.Store.YES));
-                    doc.add(new StoredField("data", objectMapper.writeValueAsString(row)));
-                    doc.add(new TextField("content", content.toString(), Field.Store.NO));
-
-                    if (createdAt != null) {
-                        long epoch = createdAt.toEpochMilli();
-                        doc.add(new LongPoint("created_at_epoch", epoch));
-                        doc.add(new StoredField("created_at_epoch", epoch));
-                        if (createdAtRaw != null) {
-                            doc.add(new StoredField("created_at", createdAtRaw));
+                        Document doc = converter.convert(rs);
+                        if (doc != null) {
+                            writer.addDocument(doc);
+                            rowCount++;
+                            rowsIndexed.increment();
                         }
+                        fetchStart = System.nanoTime();
+                    }
+                }
+                if (chunkRows > 0) {
+                    lastKey = converter.lastKey();
+                    checkpoint.progress(table, lastKey, converter.keyTypes(), rowCount);
+                    if (checkpoint.due()) {
+                        commit(writer, checkpoint);
                     }
-
-                    writer.addDocument(doc);
-                    rowCount++;
                 }
+                if (yielding) {
+                    // The cursor is closed, so a pause holds no read view on the source; the
+                    // next query continues after the last key indexed.
+                    pacing.yieldTurn();
+                }
+            } while (yielding || chunkRows == FETCH_SIZE);
+        } finally {
+            if (converter != null) {
+                converter.close();
             }
+            ACTIVE_TABLES.decrementAndGet();
+            pacing.exit();
+        }
+        boolean hasCreatedAt = converter != null && converter.hasCreatedAt();
+
+        writer.addDocument(tableMeta(table, String.join(",", primaryKeys), rowCount, hasCreatedAt));
+        checkpoint.tableDone(table, rowCount);
+        if (checkpoint.due()) {
+            commit(writer, checkpoint);
         }
 
+        TABLES_COMPLETED.increment();
+        listener.tableIndexed(table, rowCount);
+        LOGGER.info("Indexed table {} (rows: {})", table, rowCount);
+    }
+
+    /**
+     * Brings the shard of a file source up to date with its directory tree, see
+     * {@link FileSourceIndexer}. The file path is the source's primary key.
+     */
+    private void indexFiles(AppConfig.FileSource source, AppConfig.IngestConfig ingest, IndexWriter writer,
+                            IngestCheckpoint checkpoint) throws IOException {
+        String table = source.id();
+        ACTIVE_TABLES.incrementAndGet();
+        listener.tableStarted(table);
+        long files;
+        try {
+            files = new FileSourceIndexer(source, ingest, writer, objectMapper, () -> {
+                synchronized (checkpoint) {
+                    if (checkpoint.due()) {
+                        commit(writer, checkpoint);
+                    }
+                }
+            }).index();
+        } finally {
+            ACTIVE_TABLES.decrementAndGet();
+        }
+        writer.deleteDocuments(new Term("doc_type", "table_meta"));
+        writer.addDocument(tableMeta(table, "path", files, true));
+        checkpoint.tableDone(table, files);
+
+        TABLES_COMPLETED.increment();
+        listener.tableIndexed(table, files);
+        LOGGER.info("Indexed file source {} (files: {})", table, files);
+    }
+
+    private static Document tableMeta(String table, String primaryKey, long rowCount, boolean hasCreatedAt) {
         Document metaDoc = new Document();
         metaDoc.add(new StringField("doc_type", "table_meta", Field.Store.YES));
         metaDoc.add(new StringField("table", table, Field.Store.YES));
-        metaDoc.add(new StoredField("primary_key", String.join(",", primaryKeys)));
+        metaDoc.add(new StoredField("primary_key", primaryKey));
         metaDoc.add(new StoredField("row_count", rowCount));
         metaDoc.add(new StoredField("has_created_at", Boolean.toString(hasCreatedAt)));
-        writer.addDocument(metaDoc);
-
-        LOGGER.info("Indexed table {} (rows: {})", table, rowCount);
+        return metaDoc;
     }
 
-    private List<String> loadPrimaryKeys(DatabaseMetaData metaData, String catalog, String table) throws SQLException {
-        List<String> keys = new ArrayList<>();
-        try (ResultSet rs = metaData.getPrimaryKeys(catalog, null, table)) {
-            while (rs.next()) {
-                String col = rs.getString("COLUMN_NAME");
-                if (col != null && !col.isBlank()) {
-                    keys.add(col);
-                }
+    /**
+     * {@code (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...}: rows after a key in primary-key order.
+     */
+    private static String after(List<String> keys) {
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            StringBuilder term = new StringBuilder("(");
+            for (int k = 0; k < i; k++) {
+                term.append(quote(keys.get(k))).append(" = ? AND ");
             }
+            terms.add(term.append(quote(keys.get(i))).append(" > ?)").toString());
         }
-        return keys;
+        return String.join(" OR ", terms);
     }
 
-    private String buildId(List<String> primaryKeys, ResultSet rs) throws SQLException {
-        List<String> parts = new ArrayList<>();
-        for (String key : primaryKeys) {
-            Object value = rs.getObject(key);
-            if (value == null) {
-                return null;
+    private static void bindAfter(PreparedStatement stmt, List<Object> key) throws SQLException {
+        int parameter = 1;
+        for (int i = 0; i < key.size(); i++) {
+            for (int k = 0; k <= i; k++) {
+                stmt.setObject(parameter++, key.get(k));
             }
-            parts.add(value.toString());
         }
-        return String.join(":", parts);
     }
 
-    private Instant toInstant(Object value, String raw) {
-        if (value == null && raw == null) {
-            return null;
-        }
-        if (value instanceof Timestamp timestamp) {
-            return timestamp.toInstant();
-        }
-        if (value instanceof java.util.Date date) {
-            return date.toInstant();
-        }
-        String candidate = raw != null ? raw : value.toString();
-        if (candidate == null || candidate.isBlank()) {
-            return null;
+    /**
+     * The columns to fetch: all of them, unless the spec lists the table's columns, in which case
+     * the listed ones plus the primary key and {@code created_at}.
+     */
+    private String selectList(DatabaseMetaData metaData, Connection connection, String table,
+                              List<String> primaryKeys, AppConfig.TableSchema schema) throws SQLException {
+        if (schema == null || schema.columns().isEmpty()) {
+            return "*";
         }
-        String trimmed = candidate.trim();
-        try {
-            return Instant.parse(trimmed);
-        } catch (Exception ignored) {
-        }
-        try {
-            return OffsetDateTime.parse(trimmed).toInstant();
-        } catch (Exception ignored) {
+        List<String> selected = new ArrayList<>();
+        Set<String> present = new HashSet<>();
+        try (ResultSet rs = metaData.getColumns(connection.getCatalog(), connection.getSchema(), table, "%")) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                present.add(column.toLowerCase(Locale.ROOT));
+                boolean required = "created_at".equalsIgnoreCase(column)
+                        || primaryKeys.stream().anyMatch(column::equalsIgnoreCase);
+                if (required || schema.fetches(column)) {
+                    selected.add(quote(column));
+                }
+            }
         }
-        try {
-            return LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC);
-        } catch (Exception ignored) {
+        if (present.isEmpty()) {
+            return "*";
         }
-        try {
-            long epoch = Long.parseLong(trimmed);
-            return Instant.ofEpochMilli(epoch);
-        } catch (Exception ignored) {
+        List<String> missing = schema.columns().values().stream()
+                .map(AppConfig.SchemaColumn::name)
+                .filter(name -> !present.contains(name.toLowerCase(Locale.ROOT)))
+                .toList();
+        if (!missing.isEmpty()) {
+            LOGGER.warn("Table {}: spec columns {} do not exist", table, missing);
         }
-        return null;
+        return String.join(", ", selected);
     }
 
-    private Object normalizeValue(Object value) {
-        if (value == null) {
-            return null;
-        }
-        if (value instanceof java.time.LocalDateTime
-                || value instanceof java.time.LocalDate
-                || value instanceof java.time.LocalTime
-                || value instanceof java.time.OffsetDateTime
-                || value instanceof java.time.OffsetTime
-                || value instanceof java.time.Instant) {
-            return value.toString();
-        }
-        if (value instanceof Timestamp timestamp) {
-            return timestamp.toInstant().toString();
-        }
-        if (value instanceof java.sql.Date sqlDate) {
-            return new java.util.Date(sqlDate.getTime()).toInstant().toString();
-        }
-        if (value instanceof java.sql.Time sqlTime) {
-            return new java.util.Date(sqlTime.getTime()).toInstant().toString();
-        }
-        if (value instanceof java.util.Date date) {
-            return date.toInstant().toString();
+    private static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    private List<String> loadPrimaryKeys(DatabaseMetaData metaData, String catalog, String schema, String table)
+            throws SQLException {
+        List<String> keys = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, schema, table)) {
+            while (rs.next()) {
+                String col = rs.getString("COLUMN_NAME");
+                if (col != null && !col.isBlank()) {
+                    keys.add(col);
+                }
+            }
         }
-        return value;
+        return keys;
     }
 }
@@ -7,6 +7,15 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.StandardDirectoryReader;
+import org.apache.lucene.index.StoredFields;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.BooleanClause;
@@ -19,140 +28,550 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.StringHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Instant;
-import java.time.LocalDate;
-import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
-public class LuceneService implements Closeable {
+public final class LuceneService implements Closeable {
 
-    private final Directory directory;
-    private final DirectoryReader reader;
-    private final IndexSearcher searcher;
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneService.class);
+
+    private final Path indexPath;
+    private final AppConfig.LuceneConfig config;
     private final Analyzer analyzer;
     private final ObjectMapper objectMapper;
+    private final Map<String, Directory> directories = new HashMap<>();
+    private final Object refreshLock = new Object();
+    private final ExecutorService batchExecutor;
+    private final List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
+    private volatile IndexSnapshot current;
+    private volatile long lastRefreshMillis;
+
+    private static final Metrics.Histogram PARSE_TIME = Metrics.phase("query_parse");
+    private static final Metrics.Histogram SEARCH_TIME = Metrics.phase("search");
+    private static final Metrics.Histogram STORED_FIELDS_TIME = Metrics.phase("stored_fields");
+
+    private static final int MAX_LIMIT = 500;
+    static final int MAX_WINDOW = 10_000;
+
+    /**
+     * The arguments of one search. {@code offset} skips that many top hits, for paging through
+     * results; {@code offset + limit} is capped at {@value #MAX_WINDOW}.
+     */
+    public record SearchRequest(String query, String table, Long createdFrom, Long createdTo, int limit,
+                                int offset) {
+
+        public SearchRequest(String query, String table, Long createdFrom, Long createdTo, int limit) {
+            this(query, table, createdFrom, createdTo, limit, 0);
+        }
+    }
+
+    /**
+     * The parsed {@code table_meta} documents of one snapshot, immutable and tagged with the
+     * snapshot generation so callers can cache anything derived from it.
+     */
+    public record TableCatalog(long generation, List<Map<String, Object>> tables) {}
 
     public LuceneService(Path indexPath) throws IOException {
-        this.directory = FSDirectory.open(indexPath);
-        this.reader = DirectoryReader.open(directory);
-        this.searcher = new IndexSearcher(reader);
+        this(AppConfig.LuceneConfig.defaults(indexPath.toString()));
+    }
+
+    /**
+     * Opens every shard under {@code lucene.index_path} and runs the configured warmup before
+     * returning, so callers can start serving as soon as the constructor completes.
+     */
+    public LuceneService(AppConfig.LuceneConfig config) throws IOException {
+        this.indexPath = Path.of(config.indexPath());
+        this.config = config;
         this.analyzer = new StandardAnalyzer();
         this.objectMapper = new ObjectMapper();
+        this.batchExecutor = Executors.newFixedThreadPool(Math.max(1, config.searchThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "lucene-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.current = IndexSnapshot.empty();
+        if (hasRootIndex(indexPath)) {
+            LOGGER.warn("{} holds an index in the old single-directory layout, which is not served; "
+                    + "run a full ingest to rebuild it as shards (the old files are removed then)", indexPath);
+        }
+        refresh();
     }
 
-    public List<Map<String, Object>> listTables() throws IOException {
-        Query query = new TermQuery(new Term("doc_type", "table_meta"));
-        TopDocs docs = searcher.search(query, 1000);
-        List<Map<String, Object>> results = new ArrayList<>();
-        for (ScoreDoc hit : docs.scoreDocs) {
-            Document doc = searcher.doc(hit.doc);
-            Map<String, Object> row = new LinkedHashMap<>();
-            row.put("table", doc.get("table"));
-            row.put("primary_key", doc.get("primary_key"));
-            row.put("row_count", numericValue(doc, "row_count"));
-            row.put("has_created_at", Boolean.parseBoolean(doc.get("has_created_at")));
-            results.add(row);
+    /**
+     * True when {@code indexPath} itself holds an index, as it did before tables were split into
+     * shard directories.
+     */
+    public static boolean hasRootIndex(Path indexPath) throws IOException {
+        if (!Files.isDirectory(indexPath)) {
+            return false;
+        }
+        try (Directory directory = FSDirectory.open(indexPath)) {
+            return DirectoryReader.indexExists(directory);
+        }
+    }
+
+    /**
+     * Returns the shard directories under {@code indexPath}: every immediate subdirectory that holds
+     * a Lucene index.
+     */
+    public static List<Path> shardPaths(Path indexPath) throws IOException {
+        List<Path> shards = new ArrayList<>();
+        if (!Files.isDirectory(indexPath)) {
+            return shards;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(indexPath, Files::isDirectory)) {
+            for (Path child : children) {
+                try (Directory directory = FSDirectory.open(child)) {
+                    if (DirectoryReader.indexExists(directory)) {
+                        shards.add(child);
+                    }
+                }
+            }
+        }
+        shards.sort(Comparator.naturalOrder());
+        return shards;
+    }
+
+    /**
+     * Reopens every shard whose index changed on disk, picks up new shards and drops removed ones.
+     * Unchanged shards keep their reader, so a rebuild of one table does not invalidate the others.
+     * Each shard is served from its newest complete commit; checkpoints of a build in progress are
+     * skipped (see {@link IngestCheckpoint}).
+     *
+     * @return true if a new snapshot was published
+     */
+    public boolean refresh() throws IOException {
+        synchronized (refreshLock) {
+            IndexSnapshot previous = current;
+            Map<String, Shard> shards = new LinkedHashMap<>();
+            Set<String> listed = new HashSet<>();
+            boolean changed = false;
+            try {
+                for (Path shardPath : shardPaths(indexPath)) {
+                    String name = shardPath.getFileName().toString();
+                    listed.add(name);
+                    Shard existing = previous.shards.get(name);
+                    Directory directory = directories.get(name);
+                    if (directory == null) {
+                        directory = openDirectory(shardPath);
+                        directories.put(name, directory);
+                    }
+                    IndexCommit commit = IngestCheckpoint.latestComplete(directory);
+                    if (commit == null) {
+                        continue;
+                    }
+                    if (existing == null) {
+                        shards.put(name, Shard.open(name, DirectoryReader.open(commit)));
+                        changed = true;
+                        continue;
+                    }
+                    DirectoryReader reopened = DirectoryReader.openIfChanged(existing.reader, commit);
+                    if (reopened == null) {
+                        existing.reader.incRef();
+                        shards.put(name, existing);
+                    } else {
+                        shards.put(name, Shard.open(name, reopened));
+                        changed = true;
+                    }
+                }
+                changed |= !shards.keySet().containsAll(previous.shards.keySet());
+            } catch (IOException | RuntimeException e) {
+                for (Shard shard : shards.values()) {
+                    shard.reader.decRef();
+                }
+                throw e;
+            }
+
+            if (!changed) {
+                for (Shard shard : shards.values()) {
+                    shard.reader.decRef();
+                }
+                closeRemovedDirectories(listed);
+                lastRefreshMillis = System.currentTimeMillis();
+                return false;
+            }
+            IndexSnapshot next;
+            try {
+                next = IndexSnapshot.create(shards, previous.generation + 1);
+            } catch (IOException | RuntimeException e) {
+                for (Shard shard : shards.values()) {
+                    shard.reader.decRef();
+                }
+                throw e;
+            }
+            warm(next, previous);
+            current = next;
+            previous.decRef();
+            closeRemovedDirectories(listed);
+            lastRefreshMillis = System.currentTimeMillis();
+            LOGGER.info("Published index snapshot {} (shards: {})", current.generation, shards.size());
+            for (Runnable listener : refreshListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Refresh listener failed: {}", e.getMessage());
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Registers a callback run after each new snapshot is published, still under the refresh lock,
+     * so listeners see snapshots in order.
+     */
+    public void addRefreshListener(Runnable listener) {
+        refreshListeners.add(listener);
+    }
+
+    /**
+     * The {@code table_meta} entries of the current snapshot. The catalog is read once when a
+     * snapshot is published, so this does no index work.
+     */
+    public List<Map<String, Object>> listTables() {
+        return current.catalog.tables();
+    }
+
+    public TableCatalog catalog() {
+        return current.catalog;
+    }
+
+    public long generation() {
+        return current.generation;
+    }
+
+    /**
+     * Wall-clock time of the last refresh that completed without error, whether or not it
+     * published a new snapshot; 0 before the first.
+     */
+    public long lastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    /**
+     * Segment count per shard in the current snapshot.
+     */
+    public Map<String, Integer> segmentCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Shard shard : current.shards.values()) {
+            counts.put(shard.name, shard.reader.leaves().size());
         }
-        return results;
+        return counts;
     }
 
     public Map<String, Object> search(String queryString, String table,
                                       Long createdFrom, Long createdTo, int limit) throws Exception {
+        return search(new SearchRequest(queryString, table, createdFrom, createdTo, limit));
+    }
+
+    public Map<String, Object> search(SearchRequest request) throws Exception {
+        IndexSnapshot snapshot = acquire();
+        try {
+            return search(snapshot, request);
+        } finally {
+            snapshot.decRef();
+        }
+    }
+
+    /**
+     * Runs {@code requests} concurrently against one snapshot, so every result reflects the same
+     * index state, and returns them in request order. A failing query yields an {@code error}
+     * entry instead of failing the batch.
+     */
+    public List<Map<String, Object>> searchBatch(List<SearchRequest> requests) throws IOException {
+        IndexSnapshot snapshot = acquire();
+        try {
+            List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+            for (SearchRequest request : requests) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return search(snapshot, request);
+                    } catch (Exception e) {
+                        Map<String, Object> error = new LinkedHashMap<>();
+                        error.put("query", request.query() == null ? "" : request.query());
+                        error.put("table", request.table());
+                        error.put("error", e.getMessage());
+                        return error;
+                    }
+                }, batchExecutor));
+            }
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (CompletableFuture<Map<String, Object>> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        } finally {
+            snapshot.decRef();
+        }
+    }
+
+    public Optional<Map<String, Object>> lookup(String table, String id) throws IOException {
+        if (table == null || table.isBlank() || id == null || id.isBlank()) {
+            return Optional.empty();
+        }
+        IndexSnapshot snapshot = acquire();
+        try {
+            Shard shard = snapshot.byTable.get(table);
+            if (shard == null) {
+                return Optional.empty();
+            }
+            int doc = findRow(shard, table, id);
+            if (doc < 0) {
+                return Optional.empty();
+            }
+            long loadStart = System.nanoTime();
+            Map<String, Object> row = buildRow(shard.searcher.storedFields().document(doc));
+            STORED_FIELDS_TIME.observeSince(loadStart);
+            return Optional.of(row);
+        } finally {
+            snapshot.decRef();
+        }
+    }
+
+    /**
+     * Identifies the document {@link #lookup} would return, without loading stored fields: the
+     * segment it lives in plus its position there. Segments are write-once, so the version only
+     * changes when the row is rewritten.
+     */
+    public Optional<String> lookupVersion(String table, String id) throws IOException {
+        if (table == null || table.isBlank() || id == null || id.isBlank()) {
+            return Optional.empty();
+        }
+        IndexSnapshot snapshot = acquire();
+        try {
+            Shard shard = snapshot.byTable.get(table);
+            if (shard == null) {
+                return Optional.empty();
+            }
+            int doc = findRow(shard, table, id);
+            if (doc < 0) {
+                return Optional.empty();
+            }
+            List<LeafReaderContext> leaves = shard.reader.leaves();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+            String segment = leaf.reader() instanceof SegmentReader segmentReader
+                    ? segmentReader.getSegmentName() + ":"
+                            + StringHelper.idToString(segmentReader.getSegmentInfo().info.getId())
+                    : shard.version;
+            return Optional.of(segment + ":" + (doc - leaf.docBase));
+        } finally {
+            snapshot.decRef();
+        }
+    }
+
+    /**
+     * Identifies the index state a search of {@code table} reads: the commit of the table's shard,
+     * or of every shard, in shard name order, for a global search. Stable across restarts and
+     * replicas serving the same commits, and changed by any commit.
+     */
+    public String indexVersion(String table) {
+        IndexSnapshot snapshot = current;
+        Shard shard = table == null || table.isBlank() ? null : snapshot.byTable.get(table);
+        return shard != null ? shard.version : snapshot.version;
+    }
+
+    private static int findRow(Shard shard, String table, String id) throws IOException {
         BooleanQuery.Builder builder = new BooleanQuery.Builder();
         builder.add(new TermQuery(new Term("doc_type", "row")), BooleanClause.Occur.FILTER);
-        if (table != null && !table.isBlank()) {
+        if (shard.isGrouped()) {
             builder.add(new TermQuery(new Term("table", table)), BooleanClause.Occur.FILTER);
         }
+        builder.add(new TermQuery(new Term("id", id)), BooleanClause.Occur.FILTER);
+        long searchStart = System.nanoTime();
+        TopDocs docs = shard.searcher.search(builder.build(), 1);
+        SEARCH_TIME.observeSince(searchStart);
+        return docs.scoreDocs.length == 0 ? -1 : docs.scoreDocs[0].doc;
+    }
+
+    /**
+     * Parses a {@code created_at} bound: epoch milliseconds or an ISO-8601 date or date-time, see
+     * {@link TimestampParser}. Returns {@code null} when the value is blank or not a timestamp.
+     */
+    public static Long parseTime(String value) {
+        long millis = TimestampParser.parse(value);
+        return millis == TimestampParser.NONE ? null : millis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        batchExecutor.shutdownNow();
+        synchronized (refreshLock) {
+            current.decRef();
+            current = IndexSnapshot.empty();
+            for (Directory directory : directories.values()) {
+                directory.close();
+            }
+            directories.clear();
+        }
+        analyzer.close();
+    }
+
+    /**
+     * Closes the directories of shards that no longer exist on disk. Readers of the previous
+     * snapshot that are still in use keep their already open files.
+     */
+    private void closeRemovedDirectories(Set<String> listed) {
+        Iterator<Map.Entry<String, Directory>> entries = directories.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Directory> entry = entries.next();
+            if (listed.contains(entry.getKey())) {
+                continue;
+            }
+            entries.remove();
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close directory of removed shard {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private Directory openDirectory(Path shardPath) throws IOException {
+        AppConfig.MmapConfig mmap = config.mmap();
+        MMapDirectory directory = mmap.maxChunkSizeMb() > 0
+                ? new MMapDirectory(shardPath, (long) mmap.maxChunkSizeMb() << 20)
+                : new MMapDirectory(shardPath);
+        Set<String> preload = Set.copyOf(mmap.preloadExtensions());
+        if (!preload.isEmpty()) {
+            directory.setPreload((fileName, context) -> {
+                String extension = IndexFileNames.getExtension(fileName);
+                return extension != null && preload.contains(extension);
+            });
+        }
+        return directory;
+    }
+
+    /**
+     * Replays the warmup queries against {@code next} before it is published. Table-scoped queries
+     * only run when the table's shard was reopened; global queries always run.
+     */
+    private void warm(IndexSnapshot next, IndexSnapshot previous) {
+        AppConfig.WarmupConfig warmup = config.warmup();
+        if (warmup.queries().isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        int executed = 0;
+        for (int round = 0; round < warmup.rounds(); round++) {
+            for (AppConfig.WarmupQuery query : warmup.queries()) {
+                String table = query.table();
+                if (table != null && next.byTable.get(table) == previous.byTable.get(table)) {
+                    continue;
+                }
+                try {
+                    search(next, new SearchRequest(query.query(), table, null, null, warmup.limit()));
+                    executed++;
+                } catch (Exception e) {
+                    LOGGER.warn("Warmup query '{}' failed: {}", query.query(), e.getMessage());
+                }
+            }
+        }
+        LOGGER.info("Warmed snapshot {} with {} queries in {} ms", next.generation, executed,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private IndexSnapshot acquire() {
+        while (true) {
+            IndexSnapshot snapshot = current;
+            if (snapshot.tryIncRef()) {
+                return snapshot;
+            }
+        }
+    }
+
+    private Map<String, Object> search(IndexSnapshot snapshot, SearchRequest request) throws Exception {
+        String queryString = request.query();
+        String table = request.table();
+        int cappedLimit = Math.max(1, Math.min(request.limit(), MAX_LIMIT));
+        int offset = Math.max(0, Math.min(request.offset(), MAX_WINDOW - cappedLimit));
+        IndexSearcher searcher = snapshot.searcher;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        builder.add(new TermQuery(new Term("doc_type", "row")), BooleanClause.Occur.FILTER);
+        if (table != null && !table.isBlank()) {
+            Shard shard = snapshot.byTable.get(table);
+            if (shard == null) {
+                return searchResponse(queryString, table, 0, cappedLimit, offset, new ArrayList<>());
+            }
+            searcher = shard.searcher;
+            if (shard.isGrouped()) {
+                builder.add(new TermQuery(new Term("table", table)), BooleanClause.Occur.FILTER);
+            }
+        }
 
         Query query;
         if (queryString == null || queryString.isBlank()) {
             query = new MatchAllDocsQuery();
         } else {
+            long parseStart = System.nanoTime();
             QueryParser parser = new QueryParser("content", analyzer);
             query = parser.parse(queryString);
+            PARSE_TIME.observeSince(parseStart);
         }
         builder.add(query, BooleanClause.Occur.MUST);
 
+        Long createdFrom = request.createdFrom();
+        Long createdTo = request.createdTo();
         if (createdFrom != null || createdTo != null) {
             long from = createdFrom == null ? Long.MIN_VALUE : createdFrom;
             long to = createdTo == null ? Long.MAX_VALUE : createdTo;
             builder.add(LongPoint.newRangeQuery("created_at_epoch", from, to), BooleanClause.Occur.FILTER);
         }
 
-        int cappedLimit = Math.max(1, Math.min(limit, 500));
-        TopDocs docs = searcher.search(builder.build(), cappedLimit);
+        long searchStart = System.nanoTime();
+        TopDocs docs = searcher.search(builder.build(), offset + cappedLimit);
+        SEARCH_TIME.observeSince(searchStart);
 
+        long loadStart = System.nanoTime();
+        StoredFields storedFields = searcher.storedFields();
         List<Map<String, Object>> rows = new ArrayList<>();
-        for (ScoreDoc hit : docs.scoreDocs) {
-            Document doc = searcher.doc(hit.doc);
+        for (int i = offset; i < docs.scoreDocs.length; i++) {
+            Document doc = storedFields.document(docs.scoreDocs[i].doc);
             rows.add(buildRow(doc));
         }
+        STORED_FIELDS_TIME.observeSince(loadStart);
+        return searchResponse(queryString, table, docs.totalHits.value, cappedLimit, offset, rows);
+    }
 
+    private Map<String, Object> searchResponse(String queryString, String table, long count, int limit,
+                                               int offset, List<Map<String, Object>> rows) {
         Map<String, Object> response = new LinkedHashMap<>();
         response.put("query", queryString == null ? "" : queryString);
         response.put("table", table);
-        response.put("count", docs.totalHits.value);
-        response.put("limit", cappedLimit);
+        response.put("count", count);
+        response.put("limit", limit);
+        if (offset > 0) {
+            response.put("offset", offset);
+        }
         response.put("results", rows);
         return response;
     }
 
-    public Optional<Map<String, Object>> lookup(String table, String id) throws IOException {
-        if (table == null || table.isBlank() || id == null || id.isBlank()) {
-            return Optional.empty();
-        }
-        BooleanQuery.Builder builder = new BooleanQuery.Builder();
-        builder.add(new TermQuery(new Term("doc_type", "row")), BooleanClause.Occur.FILTER);
-        builder.add(new TermQuery(new Term("table", table)), BooleanClause.Occur.FILTER);
-        builder.add(new TermQuery(new Term("id", id)), BooleanClause.Occur.FILTER);
-        TopDocs docs = searcher.search(builder.build(), 1);
-        if (docs.scoreDocs.length == 0) {
-            return Optional.empty();
-        }
-        Document doc = searcher.doc(docs.scoreDocs[0].doc);
-        return Optional.of(buildRow(doc));
-    }
-
-    public static Long parseTime(String value) {
-        if (value == null || value.isBlank()) {
-            return null;
-        }
-        String trimmed = value.trim();
-        try {
-            return Instant.parse(trimmed).toEpochMilli();
-        } catch (Exception ignored) {
-        }
-        try {
-            return OffsetDateTime.parse(trimmed).toInstant().toEpochMilli();
-        } catch (Exception ignored) {
-        }
-        try {
-            return LocalDate.parse(trimmed).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
-        } catch (Exception ignored) {
-        }
-        try {
-            return Long.parseLong(trimmed);
-        } catch (Exception ignored) {
-        }
-        return null;
-    }
-
-    @Override
-    public void close() throws IOException {
-        reader.close();
-        directory.close();
-        analyzer.close();
-    }
-
     private Map<String, Object> buildRow(Document doc) throws IOException {
         Map<String, Object> row = new LinkedHashMap<>();
         row.put("table", doc.get("table"));
@@ -166,7 +585,22 @@ public class LuceneService implements Closeable {
         return row;
     }
 
-    private Long numericValue(Document doc, String field) {
+    private static TableCatalog readCatalog(IndexSearcher searcher, long generation) throws IOException {
+        TopDocs docs = searcher.search(new TermQuery(new Term("doc_type", "table_meta")), 1000);
+        List<Map<String, Object>> tables = new ArrayList<>();
+        for (ScoreDoc hit : docs.scoreDocs) {
+            Document doc = searcher.storedFields().document(hit.doc);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("table", doc.get("table"));
+            row.put("primary_key", doc.get("primary_key"));
+            row.put("row_count", numericValue(doc, "row_count"));
+            row.put("has_created_at", Boolean.parseBoolean(doc.get("has_created_at")));
+            tables.add(Collections.unmodifiableMap(row));
+        }
+        return new TableCatalog(generation, List.copyOf(tables));
+    }
+
+    private static Long numericValue(Document doc, String field) {
         if (doc == null || field == null) {
             return null;
         }
@@ -184,4 +618,116 @@ public class LuceneService implements Closeable {
             return null;
         }
     }
+
+    /**
+     * One shard's point-in-time reader plus the tables it holds, read once from its table_meta docs.
+     */
+    private static final class Shard {
+        private final String name;
+        private final DirectoryReader reader;
+        private final IndexSearcher searcher;
+        private final List<String> tables;
+        private final String version;
+
+        private Shard(String name, DirectoryReader reader, IndexSearcher searcher, List<String> tables) {
+            this.name = name;
+            this.reader = reader;
+            this.searcher = searcher;
+            this.tables = tables;
+            this.version = reader instanceof StandardDirectoryReader standard
+                    ? name + ":" + StringHelper.idToString(standard.getSegmentInfos().getId()) + ":" + reader.getVersion()
+                    : name + ":" + reader.getVersion();
+        }
+
+        static Shard open(String name, DirectoryReader reader) throws IOException {
+            try {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                TopDocs docs = searcher.search(new TermQuery(new Term("doc_type", "table_meta")), 1000);
+                List<String> tables = new ArrayList<>();
+                for (ScoreDoc hit : docs.scoreDocs) {
+                    String table = searcher.storedFields().document(hit.doc).get("table");
+                    if (table != null) {
+                        tables.add(table);
+                    }
+                }
+                return new Shard(name, reader, searcher, List.copyOf(tables));
+            } catch (IOException | RuntimeException e) {
+                reader.decRef();
+                throw e;
+            }
+        }
+
+        boolean isGrouped() {
+            return tables.size() > 1;
+        }
+    }
+
+    /**
+     * An immutable set of shard readers plus a {@link MultiReader} across all of them for global
+     * search. Reference counted so a refresh can swap snapshots while searches are in flight; each
+     * snapshot holds one reference on every shard reader it uses.
+     */
+    private static final class IndexSnapshot {
+        private final Map<String, Shard> shards;
+        private final Map<String, Shard> byTable;
+        private final MultiReader reader;
+        private final IndexSearcher searcher;
+        private final long generation;
+        private final TableCatalog catalog;
+        private final String version;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private IndexSnapshot(Map<String, Shard> shards, MultiReader reader, long generation) throws IOException {
+            this.shards = shards;
+            this.reader = reader;
+            this.searcher = new IndexSearcher(reader);
+            this.generation = generation;
+            this.catalog = readCatalog(searcher, generation);
+            this.version = shards.values().stream()
+                    .map(shard -> shard.version)
+                    .collect(Collectors.joining(","));
+            Map<String, Shard> tables = new HashMap<>();
+            for (Shard shard : shards.values()) {
+                for (String table : shard.tables) {
+                    tables.put(table, shard);
+                }
+            }
+            this.byTable = Map.copyOf(tables);
+        }
+
+        static IndexSnapshot empty() throws IOException {
+            return create(Map.of(), 0);
+        }
+
+        /**
+         * Orders shards by name, so the global version and the document order of the multi-reader
+         * are the same on every node and across restarts.
+         */
+        static IndexSnapshot create(Map<String, Shard> shards, long generation) throws IOException {
+            Map<String, Shard> sorted = new TreeMap<>(shards);
+            IndexReader[] readers = sorted.values().stream()
+                    .map(shard -> shard.reader)
+                    .toArray(IndexReader[]::new);
+            return new IndexSnapshot(Collections.unmodifiableMap(sorted), new MultiReader(readers, false), generation);
+        }
+
+        boolean tryIncRef() {
+            int count;
+            while ((count = refCount.get()) > 0) {
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void decRef() throws IOException {
+            if (refCount.decrementAndGet() == 0) {
+                reader.close();
+                for (Shard shard : shards.values()) {
+                    shard.reader.decRef();
+                }
+            }
+        }
+    }
 }
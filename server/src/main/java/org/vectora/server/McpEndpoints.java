@@ -0,0 +1,232 @@
+package org.vectora.server;
+
+import io.modelcontextprotocol.json.McpJsonMapper;
+import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpServer;
+import io.modelcontextprotocol.server.McpStatelessAsyncServer;
+import io.modelcontextprotocol.server.McpSyncServer;
+import io.modelcontextprotocol.server.transport.HttpServletSseServerTransportProvider;
+import io.modelcontextprotocol.server.transport.HttpServletStatelessServerTransport;
+import io.modelcontextprotocol.server.transport.HttpServletStreamableServerTransportProvider;
+import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.servlet.http.HttpServlet;
+import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
+import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * One MCP server per enabled transport, all serving the same tools:
+ * <ul>
+ *     <li>{@code sse}: the legacy SSE transport at {@code /mcp/sse} + {@code /mcp/message}</li>
+ *     <li>{@code streamable}: the streamable HTTP transport at {@code /mcp}, stateless unless
+ *     {@code mcp.stateless} is false, so short-lived clients can call tools without holding a stream</li>
+ * </ul>
+ * The table tools follow the index: {@link #refreshTools()} adds and removes them on every server,
+ * and session-based servers tell their clients that the tool list changed.
+ */
+public final class McpEndpoints {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(McpEndpoints.class);
+    private static final String SERVER_NAME = "mcp-lucene-server";
+    private static final String SERVER_VERSION = "1.0.0";
+
+    private final AppConfig.McpConfig config;
+    private final McpTools tools;
+    private final Scheduler searchScheduler;
+    private final List<McpAsyncServer> asyncServers = new ArrayList<>();
+    private final List<McpSyncServer> syncServers = new ArrayList<>();
+    private final List<McpStatelessAsyncServer> statelessServers = new ArrayList<>();
+    private final Set<String> registered = new LinkedHashSet<>();
+
+    private McpEndpoints(AppConfig.McpConfig config, McpTools tools, Scheduler searchScheduler) {
+        this.config = config;
+        this.tools = tools;
+        this.searchScheduler = searchScheduler;
+    }
+
+    /**
+     * Builds the servers for every transport in {@code mcp.transports} and mounts their servlets on
+     * {@code context}.
+     */
+    public static McpEndpoints create(AppConfig config, McpTools tools, McpJsonMapper jsonMapper,
+                                      String baseUrl, ServletContextHandler context) throws Exception {
+        AppConfig.McpConfig mcpConfig = config.mcp();
+        McpEndpoints endpoints = new McpEndpoints(mcpConfig, tools, createSearchScheduler(mcpConfig));
+        List<McpTools.ToolDefinition> definitions = tools.definitions();
+        definitions.forEach(def -> endpoints.registered.add(def.tool().name()));
+
+        if (mcpConfig.transports().contains("sse")) {
+            HttpServletSseServerTransportProvider transport = HttpServletSseServerTransportProvider.builder()
+                    .jsonMapper(jsonMapper)
+                    .baseUrl(baseUrl + "/mcp")
+                    .sseEndpoint("/sse")
+                    .messageEndpoint("/message")
+                    .keepAliveInterval(keepAlive(config.server()))
+                    .build();
+            if (mcpConfig.async()) {
+                endpoints.asyncServers.add(endpoints.build(McpServer.async(transport), definitions));
+            } else {
+                endpoints.syncServers.add(endpoints.build(McpServer.sync(transport), definitions));
+            }
+            mount(context, "mcp_sse", transport, "/mcp/sse", "/mcp/message");
+        }
+
+        if (mcpConfig.transports().contains("streamable")) {
+            if (mcpConfig.stateless()) {
+                HttpServletStatelessServerTransport transport = HttpServletStatelessServerTransport.builder()
+                        .jsonMapper(jsonMapper)
+                        .messageEndpoint("/mcp")
+                        .build();
+                endpoints.statelessServers.add(McpServer.async(transport)
+                        .serverInfo(SERVER_NAME, SERVER_VERSION)
+                        .tools(definitions.stream()
+                                .map(def -> McpTools.stateless(def, endpoints.blockingScheduler()))
+                                .toList())
+                        .build());
+                mount(context, "mcp", transport, "/mcp");
+            } else {
+                HttpServletStreamableServerTransportProvider transport =
+                        HttpServletStreamableServerTransportProvider.builder()
+                                .jsonMapper(jsonMapper)
+                                .mcpEndpoint("/mcp")
+                                .keepAliveInterval(keepAlive(config.server()))
+                                .build();
+                if (mcpConfig.async()) {
+                    endpoints.asyncServers.add(endpoints.build(McpServer.async(transport), definitions));
+                } else {
+                    endpoints.syncServers.add(endpoints.build(McpServer.sync(transport), definitions));
+                }
+                mount(context, "mcp", transport, "/mcp");
+            }
+        }
+
+        LOGGER.info("MCP transports: {} (mode: {}, streamable stateless: {})",
+                mcpConfig.transports(), mcpConfig.async() ? "async" : "sync", mcpConfig.stateless());
+        return endpoints;
+    }
+
+    /**
+     * Brings the table tools in line with the current index: tools for tables that appeared are
+     * added and tools for tables that are gone are removed. Called after every index refresh.
+     */
+    public synchronized void refreshTools() {
+        List<McpTools.ToolDefinition> definitions;
+        try {
+            definitions = tools.definitions();
+        } catch (Exception e) {
+            LOGGER.warn("Failed to list tools after refresh: {}", e.getMessage());
+            return;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        definitions.forEach(def -> names.add(def.tool().name()));
+
+        List<String> removed = registered.stream().filter(name -> !names.contains(name)).toList();
+        List<McpTools.ToolDefinition> added = definitions.stream()
+                .filter(def -> !registered.contains(def.tool().name()))
+                .toList();
+        for (String name : removed) {
+            forEachServer(name, server -> server.removeTool(name).block(),
+                    server -> server.removeTool(name), server -> server.removeTool(name).block());
+            registered.remove(name);
+        }
+        for (McpTools.ToolDefinition def : added) {
+            String name = def.tool().name();
+            forEachServer(name, server -> server.addTool(McpTools.async(def, searchScheduler)).block(),
+                    server -> server.addTool(McpTools.sync(def)),
+                    server -> server.addTool(McpTools.stateless(def, blockingScheduler())).block());
+            registered.add(name);
+        }
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            LOGGER.info("MCP tools updated: added {}, removed {}",
+                    added.stream().map(def -> def.tool().name()).toList(), removed);
+        }
+    }
+
+    public void close() {
+        for (McpAsyncServer server : asyncServers) {
+            server.closeGracefully().block();
+        }
+        for (McpSyncServer server : syncServers) {
+            server.closeGracefully();
+        }
+        for (McpStatelessAsyncServer server : statelessServers) {
+            server.closeGracefully().block();
+        }
+        if (searchScheduler != null) {
+            searchScheduler.dispose();
+        }
+    }
+
+    /**
+     * Finishes a session-based server spec in async mode. Tool list changes are advertised so
+     * clients re-fetch the list when {@link #refreshTools()} changes it.
+     */
+    private McpAsyncServer build(McpServer.AsyncSpecification<?> spec, List<McpTools.ToolDefinition> definitions) {
+        return spec.serverInfo(SERVER_NAME, SERVER_VERSION)
+                .capabilities(McpSchema.ServerCapabilities.builder().tools(true).build())
+                .tools(definitions.stream().map(def -> McpTools.async(def, searchScheduler)).toList())
+                .build();
+    }
+
+    /**
+     * Finishes a session-based server spec in sync mode; sync tool handlers block the calling thread.
+     */
+    private McpSyncServer build(McpServer.SyncSpecification<?> spec, List<McpTools.ToolDefinition> definitions) {
+        return spec.serverInfo(SERVER_NAME, SERVER_VERSION)
+                .capabilities(McpSchema.ServerCapabilities.builder().tools(true).build())
+                .tools(definitions.stream().map(McpTools::sync).toList())
+                .build();
+    }
+
+    private void forEachServer(String tool, Consumer<McpAsyncServer> async, Consumer<McpSyncServer> sync,
+                               Consumer<McpStatelessAsyncServer> stateless) {
+        try {
+            asyncServers.forEach(async);
+            syncServers.forEach(sync);
+            statelessServers.forEach(stateless);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to update MCP tool {}: {}", tool, e.getMessage());
+        }
+    }
+
+    /**
+     * The scheduler blocking tool handlers run on: the bounded search scheduler in async mode,
+     * otherwise Reactor's shared bounded-elastic pool, which is what the sync server uses.
+     */
+    private Scheduler blockingScheduler() {
+        return searchScheduler != null ? searchScheduler : Schedulers.boundedElastic();
+    }
+
+    private static Scheduler createSearchScheduler(AppConfig.McpConfig mcpConfig) {
+        if (!mcpConfig.async()) {
+            return null;
+        }
+        LOGGER.info("MCP async mode: {} search threads, queue {}",
+                mcpConfig.searchThreads(), mcpConfig.searchQueue());
+        return Schedulers.newBoundedElastic(mcpConfig.searchThreads(), mcpConfig.searchQueue(),
+                "mcp-search", 60, true);
+    }
+
+    private static Duration keepAlive(AppConfig.ServerConfig serverConfig) {
+        int seconds = serverConfig.sseKeepAliveSeconds();
+        return seconds > 0 ? Duration.ofSeconds(seconds) : null;
+    }
+
+    private static void mount(ServletContextHandler context, String name, HttpServlet servlet, String... paths) {
+        ServletHolder holder = new ServletHolder(name, servlet);
+        holder.setAsyncSupported(true);
+        for (String path : paths) {
+            context.addServlet(holder, path);
+        }
+    }
+}
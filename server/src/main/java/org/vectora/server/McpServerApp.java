@@ -1,28 +1,35 @@
 package org.vectora.server;
 
 import io.modelcontextprotocol.json.McpJsonMapper;
-import io.modelcontextprotocol.server.McpServer;
-import io.modelcontextprotocol.server.McpSyncServer;
-import io.modelcontextprotocol.server.transport.HttpServletSseServerTransportProvider;
-import io.modelcontextprotocol.spec.McpSchema;
+import jakarta.servlet.DispatcherType;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.ee10.servlet.ServletHolder;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 public class McpServerApp {
 
     private static final Logger LOGGER = initLogger();
-    private static final String SERVER_NAME = "mcp-lucene-server";
-    private static final String SERVER_VERSION = "1.0.0";
+    private static final String ADMIN_CONNECTOR = "admin";
 
     private static Logger initLogger() {
         System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "info");
@@ -37,41 +44,42 @@ public class McpServerApp {
         AppConfig config = AppConfig.load(configPath);
 
         if (parsed.ingestOnly) {
-            new LuceneIndexer().buildIndex(config);
+            new LuceneIndexer(LuceneIndexer.Listener.NONE, new IngestThrottle(config.ingest().throttle()))
+                    .buildIndex(config, parsed.tables);
             LOGGER.info("Lucene ingest complete. Index stored at {}", config.lucene().indexPath());
             return;
         }
 
-        Path indexPath = Path.of(config.lucene().indexPath());
-        if (!indexExists(indexPath)) {
-            LOGGER.info("Lucene index missing; running ingest.");
-            new LuceneIndexer().buildIndex(config);
-        }
+        boolean ingestOnStartup = !parsed.train && !indexExists(Path.of(config.lucene().indexPath()));
 
-        try (LuceneService luceneService = new LuceneService(indexPath)) {
+        try (LuceneService luceneService = new LuceneService(config.lucene())) {
+            IngestProgress ingest = new IngestProgress(luceneService);
+            IngestThrottle throttle = new IngestThrottle(config.ingest().throttle());
+            ScheduledExecutorService refresher = startRefresher(luceneService, config.lucene());
             int port = config.server().port();
             String baseUrl = "http://localhost:" + port;
 
-            McpJsonMapper jsonMapper = McpJsonMapper.getDefault();
-            HttpServletSseServerTransportProvider transportProvider =
-                    HttpServletSseServerTransportProvider.builder()
-                            .jsonMapper(jsonMapper)
-                            .baseUrl(baseUrl + "/mcp")
-                            .sseEndpoint("/sse")
-                            .messageEndpoint("/message")
-                            .build();
-
-            McpSyncServer server = buildMcpServer(luceneService, jsonMapper, transportProvider);
-
-            Server httpServer = new Server(port);
+            Server httpServer = createHttpServer(config.server());
             ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
             context.setContextPath("/");
-            context.addServlet(new ServletHolder(transportProvider), "/mcp/*");
-            context.addServlet(new ServletHolder(new ToolsServlet(luceneService)), "/tools");
-            context.addServlet(new ServletHolder(new HealthServlet()), "/health");
-            context.addServlet(new ServletHolder(new SearchServlet(luceneService)), "/search");
-            context.addServlet(new ServletHolder(new RowLookupServlet(luceneService)), "/*");
-            httpServer.setHandler(context);
+            McpJsonMapper jsonMapper = McpJsonMapper.getDefault();
+            AdmissionControl admission = new AdmissionControl(config.admission());
+            McpTools tools = new McpTools(luceneService, jsonMapper, config.mcp(), admission);
+            McpEndpoints mcp = McpEndpoints.create(config, tools, jsonMapper, baseUrl, context);
+            luceneService.addRefreshListener(mcp::refreshTools);
+            context.addServlet(new ServletHolder("tools", new ToolsServlet(luceneService)), "/tools");
+            Readiness readiness = new Readiness(luceneService, admission, ingest, config);
+            ServletHolder health = new ServletHolder("health", new HealthServlet());
+            context.addServlet(health, "/health");
+            context.addServlet(health, "/health/live");
+            context.addServlet(new ServletHolder("ready", new ReadinessServlet(readiness)), "/health/ready");
+            context.addServlet(new ServletHolder("metrics", new MetricsServlet()), "/metrics");
+            context.addServlet(new ServletHolder("ingest", new IngestThrottleServlet(throttle)), "/ingest/throttle");
+            context.addServlet(new ServletHolder("search", new SearchServlet(luceneService, admission)), "/search");
+            context.addServlet(new ServletHolder("lookup", new RowLookupServlet(luceneService, admission)), "/*");
+            context.addFilter(RequestMetricsFilter.class, "/*", EnumSet.of(DispatcherType.REQUEST));
+            registerGauges(luceneService, admission, readiness, throttle);
+            httpServer.setHandler(compression(config.server(), withAdmin(config.server(), context, throttle)));
 
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 try {
@@ -79,218 +87,184 @@ public class McpServerApp {
                 } catch (Exception e) {
                     LOGGER.warn("Failed to stop HTTP server cleanly: {}", e.getMessage());
                 }
-                server.closeGracefully();
+                if (refresher != null) {
+                    refresher.shutdownNow();
+                }
+                mcp.close();
             }));
 
             httpServer.start();
             LOGGER.info("Server started on {}", baseUrl);
+            if (parsed.train) {
+                new TrainingRun(baseUrl, config).run(luceneService);
+                httpServer.stop();
+                return;
+            }
+            if (ingestOnStartup) {
+                LOGGER.info("Lucene index missing; ingesting in the background.");
+                startBackgroundIngest(config, luceneService, ingest, throttle);
+            }
             httpServer.join();
         }
     }
 
-    private static McpSyncServer buildMcpServer(LuceneService luceneService, McpJsonMapper jsonMapper,
-                                                HttpServletSseServerTransportProvider transportProvider)
-            throws Exception {
-        var builder = McpServer.sync(transportProvider)
-                .serverInfo(SERVER_NAME, SERVER_VERSION)
-                .tool(pingTool(jsonMapper), (exchange, params) -> handlePing())
-                .tool(pongTool(jsonMapper), (exchange, params) -> handlePong())
-                .tool(dingTool(jsonMapper), (exchange, params) -> handleDing())
-                .tool(dongTool(jsonMapper), (exchange, params) -> handleDong());
-
-        List<Map<String, Object>> tables = luceneService.listTables();
-        for (Map<String, Object> table : tables) {
-            String tableName = value(table.get("table"));
-            if (tableName.isBlank()) {
-                continue;
-            }
-            builder = builder.tool(tableSearchTool(jsonMapper, tableName),
-                    (exchange, params) -> handleTableSearch(luceneService, tableName, params));
-            builder = builder.tool(tableLookupTool(jsonMapper, tableName),
-                    (exchange, params) -> handleTableLookup(luceneService, tableName, params));
+    private static Server createHttpServer(AppConfig.ServerConfig serverConfig) {
+        QueuedThreadPool threadPool = new QueuedThreadPool(serverConfig.maxThreads(), serverConfig.minThreads());
+        threadPool.setName("jetty");
+        if (serverConfig.virtualThreads()) {
+            threadPool.setVirtualThreadsExecutor(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jetty-vt-", 0).factory()));
         }
-
-        return builder.build();
-    }
-
-    private static McpSchema.Tool pingTool(McpJsonMapper jsonMapper) {
-        return buildTool(jsonMapper, "ping", "Returns pong with server time");
-    }
-
-    private static McpSchema.Tool pongTool(McpJsonMapper jsonMapper) {
-        return buildTool(jsonMapper, "pong", "Returns ping with server time");
-    }
-
-    private static McpSchema.Tool dingTool(McpJsonMapper jsonMapper) {
-        return buildTool(jsonMapper, "ding", "Returns dong with reversed server time");
-    }
-
-    private static McpSchema.Tool dongTool(McpJsonMapper jsonMapper) {
-        return buildTool(jsonMapper, "dong", "Returns ding with reversed server time");
-    }
-
-    private static McpSchema.Tool buildTool(McpJsonMapper jsonMapper, String name, String description) {
-        return McpSchema.Tool.builder()
-                .name(name)
-                .description(description)
-                .inputSchema(jsonMapper, """
-                        {
-                          "type": "object",
-                          "properties": {
-                            "message": {
-                              "type": "string"
-                            }
-                          },
-                          "additionalProperties": false
-                        }
-                        """)
-                .build();
-    }
-
-    private static McpSchema.Tool tableSearchTool(McpJsonMapper jsonMapper, String table) {
-        return McpSchema.Tool.builder()
-                .name("search_" + normalize(table))
-                .description("Search rows in " + table + " using Lucene")
-                .inputSchema(jsonMapper, """
-                        {
-                          "type": "object",
-                          "properties": {
-                            "query": {"type": "string"},
-                            "created_at_from": {"type": "string"},
-                            "created_at_to": {"type": "string"},
-                            "limit": {"type": "integer"}
-                          },
-                          "additionalProperties": false
-                        }
-                        """)
-                .build();
-    }
-
-    private static McpSchema.Tool tableLookupTool(McpJsonMapper jsonMapper, String table) {
-        return McpSchema.Tool.builder()
-                .name("get_" + normalize(table) + "_by_id")
-                .description("Lookup a " + table + " row by id")
-                .inputSchema(jsonMapper, """
-                        {
-                          "type": "object",
-                          "properties": {
-                            "id": {"type": "string"}
-                          },
-                          "additionalProperties": false
-                        }
-                        """)
-                .build();
-    }
-
-    private static McpSchema.CallToolResult handlePing() {
-        return toolResult("ping", "pong", false);
+        Server httpServer = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(httpServer,
+                serverConfig.acceptors(), serverConfig.selectors());
+        connector.setHost(serverConfig.host());
+        connector.setPort(serverConfig.port());
+        connector.setIdleTimeout(serverConfig.idleTimeoutMs());
+        httpServer.addConnector(connector);
+        if (serverConfig.adminPort() > 0) {
+            ServerConnector admin = new ServerConnector(httpServer, 1, 1);
+            admin.setName(ADMIN_CONNECTOR);
+            admin.setHost(serverConfig.adminHost());
+            admin.setPort(serverConfig.adminPort());
+            httpServer.addConnector(admin);
+            LOGGER.info("Admin endpoints on {}:{}", serverConfig.adminHost(), serverConfig.adminPort());
+        }
+        LOGGER.info("HTTP thread model: {} (platform threads {}-{})",
+                serverConfig.virtualThreads() ? "virtual" : "platform",
+                serverConfig.minThreads(), serverConfig.maxThreads());
+        return httpServer;
     }
 
-    private static McpSchema.CallToolResult handlePong() {
-        return toolResult("pong", "ping", false);
+    /**
+     * Adds the operator endpoints ({@code POST /ingest/pause}, {@code /ingest/resume}) in a context
+     * that only answers requests arriving on the admin connector. Without an admin port they are
+     * not served.
+     */
+    private static Handler withAdmin(AppConfig.ServerConfig serverConfig, ServletContextHandler context,
+                                     IngestThrottle throttle) {
+        if (serverConfig.adminPort() <= 0) {
+            return context;
+        }
+        ServletContextHandler admin = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        admin.setContextPath("/ingest");
+        admin.setVirtualHosts(List.of("@" + ADMIN_CONNECTOR));
+        ServletHolder control = new ServletHolder("ingest-control", new IngestThrottleServlet(throttle));
+        admin.addServlet(control, "/pause");
+        admin.addServlet(control, "/resume");
+        return new ContextHandlerCollection(admin, context);
     }
 
-    private static McpSchema.CallToolResult handleDing() {
-        return toolResult("ding", "dong", true);
+    /**
+     * Wraps {@code handler} in gzip compression for the REST endpoints. MCP paths are left alone:
+     * their SSE streams must flush each event as it is written.
+     */
+    private static Handler compression(AppConfig.ServerConfig serverConfig, Handler handler) {
+        if (!serverConfig.gzip()) {
+            return handler;
+        }
+        GzipHandler gzip = new GzipHandler(handler);
+        gzip.setMinGzipSize(serverConfig.gzipMinBytes());
+        gzip.addExcludedPaths("/mcp", "/mcp/*");
+        gzip.addIncludedMethods("GET");
+        return gzip;
     }
 
-    private static McpSchema.CallToolResult handleDong() {
-        return toolResult("dong", "ding", true);
+    private static void registerGauges(LuceneService luceneService, AdmissionControl admission,
+                                       Readiness readiness, IngestThrottle throttle) {
+        Metrics.gauge("node_ready", "1 when /health/ready reports ready", () -> readiness.ready() ? 1 : 0);
+        Metrics.gauge("lucene_reader_generation", "Generation of the published index snapshot",
+                luceneService::generation);
+        Metrics.gauge("lucene_segments", "Segments per shard in the published snapshot", "shard",
+                luceneService::segmentCounts);
+        if (IndexSearcher.getDefaultQueryCache() instanceof LRUQueryCache cache) {
+            Metrics.gauge("lucene_query_cache_hits", "Lucene query cache hits", cache::getHitCount);
+            Metrics.gauge("lucene_query_cache_misses", "Lucene query cache misses", cache::getMissCount);
+            Metrics.gauge("lucene_query_cache_entries", "Queries held in the Lucene query cache", cache::getCacheSize);
+            Metrics.gauge("lucene_query_cache_evictions", "Lucene query cache evictions", cache::getEvictionCount);
+            Metrics.gauge("lucene_query_cache_bytes", "Memory used by the Lucene query cache", cache::ramBytesUsed);
+        }
+        Metrics.gauge("admission_limit", "Current adaptive concurrency limit", "limiter",
+                () -> limiterValues(admission, ConcurrencyLimiter::limit));
+        Metrics.gauge("admission_in_flight", "Requests currently admitted", "limiter",
+                () -> limiterValues(admission, ConcurrencyLimiter::inFlight));
+        Metrics.gauge("admission_rejected", "Requests rejected since startup", "limiter",
+                () -> limiterValues(admission, ConcurrencyLimiter::rejected));
+        Metrics.gauge("ingest_paused", "1 while ingest is paused", () -> throttle.paused() ? 1 : 0);
+        Metrics.gauge("ingest_rate_limit", "Rows per second ingest is held to (0: unlimited)", throttle::rateLimit);
+        Metrics.gauge("ingest_parallelism", "Tables ingest may read at once", throttle::parallelism);
+        Metrics.gauge("ingest_fetch_seconds", "Mean time to fetch 500 rows from the source",
+                () -> throttle.fetchMillis() / 1000);
+        Metrics.gauge("ingest_replication_lag_seconds", "Last replication lag seen by the ingest throttle (-1: unknown)",
+                throttle::lagSeconds);
     }
 
-    private static McpSchema.CallToolResult handleTableSearch(LuceneService luceneService, String table,
-                                                              Object params) {
-        try {
-            Map<String, Object> args = paramsToMap(params);
-            String query = value(args.get("query"));
-            String createdFromRaw = value(args.get("created_at_from"));
-            String createdToRaw = value(args.get("created_at_to"));
-            int limit = parseLimit(args.get("limit"));
-            Long createdFrom = LuceneService.parseTime(createdFromRaw);
-            Long createdTo = LuceneService.parseTime(createdToRaw);
-            Map<String, Object> payload = luceneService.search(query, table, createdFrom, createdTo, limit);
-            return new McpSchema.CallToolResult(JsonUtil.MAPPER.writeValueAsString(payload), false);
-        } catch (Exception e) {
-            return new McpSchema.CallToolResult("Search failed: " + e.getMessage(), true);
+    private static Map<String, Number> limiterValues(AdmissionControl admission,
+                                                     Function<ConcurrencyLimiter, Number> value) {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (ConcurrencyLimiter limiter : admission.limiters()) {
+            values.put(limiter.name(), value.apply(limiter));
         }
+        return values;
     }
 
-    private static McpSchema.CallToolResult handleTableLookup(LuceneService luceneService, String table,
-                                                              Object params) {
-        try {
-            Map<String, Object> args = paramsToMap(params);
-            String id = value(args.get("id"));
-            if (id.isBlank()) {
-                return new McpSchema.CallToolResult("Missing id", true);
+    /**
+     * Builds the index on a background thread. Each shard is published as soon as it is committed
+     * (see {@link IngestProgress}), so tables become searchable one by one while the rest build.
+     */
+    private static void startBackgroundIngest(AppConfig config, LuceneService luceneService,
+                                              IngestProgress ingest, IngestThrottle throttle) {
+        ingest.started();
+        Thread.ofPlatform().name("lucene-ingest").daemon(true).start(() -> {
+            Exception failure = null;
+            try {
+                new LuceneIndexer(ingest, throttle).buildIndex(config);
+                LOGGER.info("Background ingest complete. Index stored at {}", config.lucene().indexPath());
+            } catch (Exception e) {
+                failure = e;
+                LOGGER.error("Background ingest failed: {}", e.getMessage(), e);
+            } finally {
+                ingest.finished(failure);
             }
-            var row = luceneService.lookup(table, id);
-            if (row.isEmpty()) {
-                return new McpSchema.CallToolResult("Not found", true);
+            try {
+                luceneService.refresh();
+            } catch (Exception e) {
+                LOGGER.warn("Index refresh after ingest failed: {}", e.getMessage());
             }
-            return new McpSchema.CallToolResult(JsonUtil.MAPPER.writeValueAsString(row.get()), false);
-        } catch (Exception e) {
-            return new McpSchema.CallToolResult("Lookup failed: " + e.getMessage(), true);
-        }
-    }
-
-    private static McpSchema.CallToolResult toolResult(String toolName, String responsePrefix, boolean reverseTime) {
-        String serverTime = java.time.OffsetDateTime.now().toString();
-        String timeForResponse = reverseTime
-                ? new StringBuilder(serverTime).reverse().toString()
-                : serverTime;
-        LOGGER.info("Received {} request at {}", toolName, serverTime);
-        return new McpSchema.CallToolResult(responsePrefix + " @ " + timeForResponse, false);
+        });
     }
 
     private static boolean indexExists(Path path) throws Exception {
-        if (!Files.exists(path)) {
-            return false;
-        }
-        try (var directory = org.apache.lucene.store.FSDirectory.open(path)) {
-            return org.apache.lucene.index.DirectoryReader.indexExists(directory);
-        }
+        return !LuceneService.shardPaths(path).isEmpty();
     }
 
-    private static String normalize(String value) {
-        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
-    }
-
-    private static String value(Object obj) {
-        return obj == null ? "" : obj.toString().trim();
-    }
-
-    @SuppressWarnings("unchecked")
-    private static Map<String, Object> paramsToMap(Object params) {
-        if (params instanceof Map<?, ?> raw) {
-            Map<String, Object> out = new LinkedHashMap<>();
-            for (Map.Entry<?, ?> entry : raw.entrySet()) {
-                if (entry.getKey() != null) {
-                    out.put(entry.getKey().toString(), entry.getValue());
-                }
-            }
-            return out;
-        }
-        return new LinkedHashMap<>();
-    }
-
-    private static int parseLimit(Object value) {
-        if (value instanceof Number number) {
-            return number.intValue();
-        }
-        if (value == null) {
-            return 50;
-        }
-        try {
-            return Integer.parseInt(value.toString().trim());
-        } catch (NumberFormatException e) {
-            return 50;
+    private static ScheduledExecutorService startRefresher(LuceneService luceneService,
+                                                           AppConfig.LuceneConfig lucene) {
+        int interval = lucene.refreshIntervalSeconds();
+        if (interval <= 0) {
+            return null;
         }
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lucene-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                luceneService.refresh();
+            } catch (Exception e) {
+                LOGGER.warn("Index refresh failed: {}", e.getMessage());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+        return refresher;
     }
 
-    private record Args(String configPath, boolean ingestOnly) {
+    private record Args(String configPath, boolean ingestOnly, boolean train, List<String> tables) {
         static Args parse(String[] args) {
             String configPath = "./config.yaml";
             boolean ingestOnly = false;
+            boolean train = false;
+            List<String> tables = new ArrayList<>();
             if (args != null) {
                 for (int i = 0; i < args.length; i++) {
                     String arg = args[i];
@@ -307,10 +281,32 @@ public class McpServerApp {
                     }
                     if ("--ingest".equals(arg)) {
                         ingestOnly = true;
+                        continue;
+                    }
+                    if ("--train".equals(arg)) {
+                        train = true;
+                        continue;
                     }
+                    if (arg.startsWith("--tables=")) {
+                        tables.addAll(splitTables(arg.substring("--tables=".length())));
+                        continue;
+                    }
+                    if ("--tables".equals(arg) && i + 1 < args.length) {
+                        tables.addAll(splitTables(args[++i]));
+                    }
+                }
+            }
+            return new Args(configPath, ingestOnly, train, tables);
+        }
+
+        private static List<String> splitTables(String value) {
+            List<String> tables = new ArrayList<>();
+            for (String part : value.split(",")) {
+                if (!part.isBlank()) {
+                    tables.add(part.trim());
                 }
             }
-            return new Args(configPath, ingestOnly);
+            return tables;
         }
     }
 }
@@ -0,0 +1,492 @@
+package org.vectora.server;
+
+import io.modelcontextprotocol.json.McpJsonMapper;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpStatelessServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * The MCP tools served by this app: the ping/pong/ding/dong tools plus a search and a lookup tool
+ * per indexed table. Handlers are plain blocking functions; {@link #sync}, {@link #async} and
+ * {@link #stateless} adapt them to the server and transport in use.
+ */
+public final class McpTools {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(McpTools.class);
+    private static final int MAX_BATCH_QUERIES = 20;
+    private static final String BATCH_TOOL = "search_batch";
+
+    /**
+     * A tool and its handler. Handlers with a {@code limiter} do Lucene work: they are admitted
+     * through it and moved off the transport thread in async mode.
+     */
+    public record ToolDefinition(McpSchema.Tool tool,
+                                 Function<Map<String, Object>, McpSchema.CallToolResult> handler,
+                                 ConcurrencyLimiter limiter) {
+
+        public boolean blocking() {
+            return limiter != null;
+        }
+    }
+
+    private final LuceneService luceneService;
+    private final McpJsonMapper jsonMapper;
+    private final AppConfig.McpConfig config;
+    private final ConcurrencyLimiter searchLimiter;
+    private final ConcurrencyLimiter lookupLimiter;
+
+    public McpTools(LuceneService luceneService, McpJsonMapper jsonMapper, AppConfig.McpConfig config,
+                    AdmissionControl admission) {
+        this.luceneService = luceneService;
+        this.jsonMapper = jsonMapper;
+        this.config = config;
+        this.searchLimiter = admission.limiter(AdmissionControl.MCP_SEARCH);
+        this.lookupLimiter = admission.limiter(AdmissionControl.MCP_LOOKUP);
+    }
+
+    /**
+     * The current tool set. Every handler records its latency in {@code mcp_tool_seconds}.
+     */
+    public List<ToolDefinition> definitions() {
+        List<ToolDefinition> tools = new ArrayList<>();
+        tools.add(new ToolDefinition(pingTool(jsonMapper), params -> handlePing(), null));
+        tools.add(new ToolDefinition(pongTool(jsonMapper), params -> handlePong(), null));
+        tools.add(new ToolDefinition(dingTool(jsonMapper), params -> handleDing(), null));
+        tools.add(new ToolDefinition(dongTool(jsonMapper), params -> handleDong(), null));
+
+        // One permit covers the whole batch: its queries run on the shared, fixed-size batch pool
+        // (lucene.search_threads), which bounds them across all calls, and a permit per query
+        // would make batches larger than a shrunken limit impossible to admit.
+        tools.add(new ToolDefinition(batchSearchTool(jsonMapper), this::handleBatchSearch, searchLimiter));
+
+        for (Map<String, Object> table : luceneService.listTables()) {
+            String tableName = value(table.get("table"));
+            if (tableName.isBlank()) {
+                continue;
+            }
+            if (("search_" + normalize(tableName)).equals(BATCH_TOOL)) {
+                LOGGER.warn("Table {} would shadow the {} tool; its search tool is named {}",
+                        tableName, BATCH_TOOL, searchToolName(tableName));
+            }
+            tools.add(new ToolDefinition(tableSearchTool(jsonMapper, tableName),
+                    params -> handleTableSearch(tableName, params), searchLimiter));
+            tools.add(new ToolDefinition(tableLookupTool(jsonMapper, tableName),
+                    params -> handleTableLookup(tableName, params), lookupLimiter));
+        }
+        return tools.stream()
+                .map(def -> new ToolDefinition(def.tool(), timed(def.tool().name(), def.handler()), def.limiter()))
+                .toList();
+    }
+
+    private static Function<Map<String, Object>, McpSchema.CallToolResult> timed(
+            String name, Function<Map<String, Object>, McpSchema.CallToolResult> handler) {
+        Metrics.Histogram histogram = Metrics.histogram("mcp_tool_seconds", "MCP tool handler latency", "tool", name);
+        return params -> {
+            long start = System.nanoTime();
+            try {
+                return handler.apply(params);
+            } finally {
+                histogram.observeSince(start);
+            }
+        };
+    }
+
+    public static McpServerFeatures.SyncToolSpecification sync(ToolDefinition definition) {
+        return McpServerFeatures.SyncToolSpecification.builder()
+                .tool(definition.tool())
+                .callHandler((exchange, request) -> admit(definition, request))
+                .build();
+    }
+
+    /**
+     * Wraps a handler for the async server. Blocking handlers run on {@code scheduler}; when its
+     * queue is full the call fails fast with a busy result instead of waiting.
+     */
+    public static McpServerFeatures.AsyncToolSpecification async(ToolDefinition definition, Scheduler scheduler) {
+        return McpServerFeatures.AsyncToolSpecification.builder()
+                .tool(definition.tool())
+                .callHandler((exchange, request) -> call(definition, request, scheduler))
+                .build();
+    }
+
+    public static McpStatelessServerFeatures.AsyncToolSpecification stateless(ToolDefinition definition,
+                                                                              Scheduler scheduler) {
+        return McpStatelessServerFeatures.AsyncToolSpecification.builder()
+                .tool(definition.tool())
+                .callHandler((context, request) -> call(definition, request, scheduler))
+                .build();
+    }
+
+    private static Mono<McpSchema.CallToolResult> call(ToolDefinition definition, McpSchema.CallToolRequest request,
+                                                       Scheduler scheduler) {
+        if (!definition.blocking()) {
+            return Mono.fromCallable(() -> definition.handler().apply(request.arguments()));
+        }
+        return Mono.defer(() -> {
+            long permit = definition.limiter().tryAcquire();
+            if (permit == ConcurrencyLimiter.REJECTED) {
+                return Mono.just(busy(definition));
+            }
+            return Mono.fromCallable(() -> definition.handler().apply(request.arguments()))
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> definition.limiter().release(permit))
+                    .onErrorResume(RejectedExecutionException.class, e -> {
+                        LOGGER.warn("Rejected {}: search queue is full", definition.tool().name());
+                        return Mono.just(busy(definition));
+                    });
+        });
+    }
+
+    /**
+     * Runs a handler on the calling thread, for the sync server, after admission.
+     */
+    private static McpSchema.CallToolResult admit(ToolDefinition definition, McpSchema.CallToolRequest request) {
+        if (!definition.blocking()) {
+            return definition.handler().apply(request.arguments());
+        }
+        long permit = definition.limiter().tryAcquire();
+        if (permit == ConcurrencyLimiter.REJECTED) {
+            return busy(definition);
+        }
+        try {
+            return definition.handler().apply(request.arguments());
+        } finally {
+            definition.limiter().release(permit);
+        }
+    }
+
+    private static McpSchema.CallToolResult busy(ToolDefinition definition) {
+        return new McpSchema.CallToolResult("Server busy, retry later (" + definition.limiter().name()
+                + " concurrency limit reached)", true);
+    }
+
+    private static McpSchema.Tool pingTool(McpJsonMapper jsonMapper) {
+        return buildTool(jsonMapper, "ping", "Returns pong with server time");
+    }
+
+    private static McpSchema.Tool pongTool(McpJsonMapper jsonMapper) {
+        return buildTool(jsonMapper, "pong", "Returns ping with server time");
+    }
+
+    private static McpSchema.Tool dingTool(McpJsonMapper jsonMapper) {
+        return buildTool(jsonMapper, "ding", "Returns dong with reversed server time");
+    }
+
+    private static McpSchema.Tool dongTool(McpJsonMapper jsonMapper) {
+        return buildTool(jsonMapper, "dong", "Returns ding with reversed server time");
+    }
+
+    private static McpSchema.Tool buildTool(McpJsonMapper jsonMapper, String name, String description) {
+        return McpSchema.Tool.builder()
+                .name(name)
+                .description(description)
+                .inputSchema(jsonMapper, """
+                        {
+                          "type": "object",
+                          "properties": {
+                            "message": {
+                              "type": "string"
+                            }
+                          },
+                          "additionalProperties": false
+                        }
+                        """)
+                .build();
+    }
+
+    private static McpSchema.Tool tableSearchTool(McpJsonMapper jsonMapper, String table) {
+        return McpSchema.Tool.builder()
+                .name(searchToolName(table))
+                .description("Search rows in " + table + " using Lucene. format=compact returns a columns "
+                        + "header plus row arrays within a size budget, with next_cursor for the rest")
+                .inputSchema(jsonMapper, """
+                        {
+                          "type": "object",
+                          "properties": {
+                            "query": {"type": "string"},
+                            "created_at_from": {"type": "string"},
+                            "created_at_to": {"type": "string"},
+                            "limit": {"type": "integer"},
+                            "format": {"type": "string", "enum": ["json", "compact"]},
+                            "cursor": {"type": "string"},
+                            "max_bytes": {"type": "integer"},
+                            "max_tokens": {"type": "integer"},
+                            "max_value_chars": {"type": "integer"}
+                          },
+                          "additionalProperties": false
+                        }
+                        """)
+                .build();
+    }
+
+    private static McpSchema.Tool tableLookupTool(McpJsonMapper jsonMapper, String table) {
+        return McpSchema.Tool.builder()
+                .name(lookupToolName(table))
+                .description("Lookup a " + table + " row by id")
+                .inputSchema(jsonMapper, """
+                        {
+                          "type": "object",
+                          "properties": {
+                            "id": {"type": "string"}
+                          },
+                          "additionalProperties": false
+                        }
+                        """)
+                .build();
+    }
+
+    private static McpSchema.Tool batchSearchTool(McpJsonMapper jsonMapper) {
+        return McpSchema.Tool.builder()
+                .name(BATCH_TOOL)
+                .description("Run up to " + MAX_BATCH_QUERIES + " table searches in parallel against one index "
+                        + "snapshot; results are returned in request order. A query may instead carry the "
+                        + "next_cursor of an earlier compact result to continue it")
+                .inputSchema(jsonMapper, """
+                        {
+                          "type": "object",
+                          "properties": {
+                            "queries": {
+                              "type": "array",
+                              "items": {
+                                "type": "object",
+                                "properties": {
+                                  "table": {"type": "string"},
+                                  "query": {"type": "string"},
+                                  "created_at_from": {"type": "string"},
+                                  "created_at_to": {"type": "string"},
+                                  "limit": {"type": "integer"},
+                                  "cursor": {"type": "string"}
+                                },
+                                "additionalProperties": false
+                              }
+                            },
+                            "format": {"type": "string", "enum": ["json", "compact"]},
+                            "max_bytes": {"type": "integer"},
+                            "max_tokens": {"type": "integer"},
+                            "max_value_chars": {"type": "integer"}
+                          },
+                          "required": ["queries"],
+                          "additionalProperties": false
+                        }
+                        """)
+                .build();
+    }
+
+    private static McpSchema.CallToolResult handlePing() {
+        return toolResult("ping", "pong", false);
+    }
+
+    private static McpSchema.CallToolResult handlePong() {
+        return toolResult("pong", "ping", false);
+    }
+
+    private static McpSchema.CallToolResult handleDing() {
+        return toolResult("ding", "dong", true);
+    }
+
+    private static McpSchema.CallToolResult handleDong() {
+        return toolResult("dong", "ding", true);
+    }
+
+    private McpSchema.CallToolResult handleTableSearch(String table, Map<String, Object> params) {
+        try {
+            Map<String, Object> args = paramsToMap(params);
+            String cursor = value(args.get("cursor"));
+            LuceneService.SearchRequest request;
+            if (!cursor.isBlank()) {
+                request = CompactResultEncoder.decodeCursor(cursor);
+                if (!table.equals(request.table())) {
+                    return new McpSchema.CallToolResult(
+                            "Cursor belongs to another search; pass it back to the tool that returned it", true);
+                }
+            } else {
+                request = new LuceneService.SearchRequest(
+                        value(args.get("query")),
+                        table,
+                        LuceneService.parseTime(value(args.get("created_at_from"))),
+                        LuceneService.parseTime(value(args.get("created_at_to"))),
+                        parseLimit(args.get("limit")));
+            }
+            Map<String, Object> payload = luceneService.search(request);
+            if (compact(args) || !cursor.isBlank()) {
+                return new McpSchema.CallToolResult(
+                        CompactResultEncoder.encode(payload, request, compactOptions(args, 1)), false);
+            }
+            return new McpSchema.CallToolResult(JsonUtil.MAPPER.writeValueAsString(payload), false);
+        } catch (Exception e) {
+            return new McpSchema.CallToolResult("Search failed: " + e.getMessage(), true);
+        }
+    }
+
+    private McpSchema.CallToolResult handleBatchSearch(Map<String, Object> params) {
+        try {
+            Map<String, Object> args = paramsToMap(params);
+            if (!(args.get("queries") instanceof List<?> specs) || specs.isEmpty()) {
+                return new McpSchema.CallToolResult("Missing queries", true);
+            }
+            if (specs.size() > MAX_BATCH_QUERIES) {
+                return new McpSchema.CallToolResult("Too many queries (max " + MAX_BATCH_QUERIES + ")", true);
+            }
+            Map<String, String> tables = new LinkedHashMap<>();
+            for (Map<String, Object> table : luceneService.listTables()) {
+                tables.put(normalize(value(table.get("table"))), value(table.get("table")));
+            }
+            List<LuceneService.SearchRequest> requests = new ArrayList<>();
+            boolean continued = false;
+            for (Object spec : specs) {
+                Map<String, Object> specArgs = paramsToMap(spec);
+                String cursor = value(specArgs.get("cursor"));
+                if (!cursor.isBlank()) {
+                    requests.add(CompactResultEncoder.decodeCursor(cursor));
+                    continued = true;
+                    continue;
+                }
+                String table = value(specArgs.get("table"));
+                requests.add(new LuceneService.SearchRequest(
+                        value(specArgs.get("query")),
+                        tables.getOrDefault(normalize(table), table),
+                        LuceneService.parseTime(value(specArgs.get("created_at_from"))),
+                        LuceneService.parseTime(value(specArgs.get("created_at_to"))),
+                        parseLimit(specArgs.get("limit"))));
+            }
+            List<Map<String, Object>> results = luceneService.searchBatch(requests);
+            if (!compact(args) && !continued) {
+                Map<String, Object> payload = new LinkedHashMap<>();
+                payload.put("results", results);
+                return new McpSchema.CallToolResult(JsonUtil.MAPPER.writeValueAsString(payload), false);
+            }
+            CompactResultEncoder.Options options = compactOptions(args, requests.size());
+            List<String> encoded = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                Map<String, Object> result = results.get(i);
+                encoded.add(result.containsKey("error")
+                        ? JsonUtil.MAPPER.writeValueAsString(result)
+                        : CompactResultEncoder.encode(result, requests.get(i), options));
+            }
+            return new McpSchema.CallToolResult("{\"results\":[" + String.join(",", encoded) + "]}", false);
+        } catch (Exception e) {
+            return new McpSchema.CallToolResult("Batch search failed: " + e.getMessage(), true);
+        }
+    }
+
+    private boolean compact(Map<String, Object> args) {
+        String format = value(args.get("format"));
+        return "compact".equalsIgnoreCase(format.isBlank() ? config.resultFormat() : format);
+    }
+
+    /**
+     * Size limits for a compact response, from the call arguments or the configured defaults;
+     * {@code max_tokens} is converted at roughly four bytes per token. The byte budget is split
+     * evenly across {@code parts} results.
+     */
+    private CompactResultEncoder.Options compactOptions(Map<String, Object> args, int parts) {
+        int maxBytes = intArg(args.get("max_bytes"), config.maxResultBytes());
+        int maxTokens = intArg(args.get("max_tokens"), 0);
+        if (maxTokens > 0) {
+            maxBytes = maxTokens * 4;
+        }
+        int maxValueChars = intArg(args.get("max_value_chars"), config.maxValueChars());
+        return new CompactResultEncoder.Options(Math.max(1, maxBytes / Math.max(1, parts)), maxValueChars);
+    }
+
+    private McpSchema.CallToolResult handleTableLookup(String table, Map<String, Object> params) {
+        try {
+            Map<String, Object> args = paramsToMap(params);
+            String id = value(args.get("id"));
+            if (id.isBlank()) {
+                return new McpSchema.CallToolResult("Missing id", true);
+            }
+            var row = luceneService.lookup(table, id);
+            if (row.isEmpty()) {
+                return new McpSchema.CallToolResult("Not found", true);
+            }
+            return new McpSchema.CallToolResult(JsonUtil.MAPPER.writeValueAsString(row.get()), false);
+        } catch (Exception e) {
+            return new McpSchema.CallToolResult("Lookup failed: " + e.getMessage(), true);
+        }
+    }
+
+    private static McpSchema.CallToolResult toolResult(String toolName, String responsePrefix, boolean reverseTime) {
+        String serverTime = java.time.OffsetDateTime.now().toString();
+        String timeForResponse = reverseTime
+                ? new StringBuilder(serverTime).reverse().toString()
+                : serverTime;
+        LOGGER.info("Received {} request at {}", toolName, serverTime);
+        return new McpSchema.CallToolResult(responsePrefix + " @ " + timeForResponse, false);
+    }
+
+    /**
+     * The per-table search tool's name; a table whose name would take the batch tool's gets a
+     * {@code _table} suffix instead.
+     */
+    static String searchToolName(String table) {
+        String name = "search_" + normalize(table);
+        return name.equals(BATCH_TOOL) ? name + "_table" : name;
+    }
+
+    static String lookupToolName(String table) {
+        return "get_" + normalize(table) + "_by_id";
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String value(Object obj) {
+        return obj == null ? "" : obj.toString().trim();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> paramsToMap(Object params) {
+        if (params instanceof Map<?, ?> raw) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : raw.entrySet()) {
+                if (entry.getKey() != null) {
+                    out.put(entry.getKey().toString(), entry.getValue());
+                }
+            }
+            return out;
+        }
+        return new LinkedHashMap<>();
+    }
+
+    private static int intArg(Object value, int fallback) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value == null || value.toString().isBlank()) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static int parseLimit(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value == null) {
+            return 50;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return 50;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package org.vectora.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A small process-wide metrics registry rendered in the Prometheus text format. Histograms and
+ * counters are {@link LongAdder}-based so recording on hot paths does not contend; gauges are
+ * read from suppliers when {@code /metrics} is scraped. Callers on hot paths should keep the
+ * {@link Histogram} or {@link Counter} they record into instead of looking it up per request.
+ */
+public final class Metrics {
+
+    /** Latency buckets in seconds, from 100µs to 10s. */
+    private static final double[] BUCKETS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    /**
+     * Returns the histogram for {@code name} and one label, creating it on first use.
+     */
+    public static Histogram histogram(String name, String help, String label, String value) {
+        return (Histogram) family(name, help, "histogram").samples
+                .computeIfAbsent(labels(label, value), key -> new Histogram());
+    }
+
+    /**
+     * The histogram for one phase of serving a search or lookup: query parse, search, stored-field
+     * load, JSON encode or response write.
+     */
+    public static Histogram phase(String phase) {
+        return histogram("request_phase_seconds", "Time spent in each phase of serving a search or lookup",
+                "phase", phase);
+    }
+
+    public static Counter counter(String name, String help, String label, String value) {
+        return (Counter) family(name, help, "counter").samples
+                .computeIfAbsent(labels(label, value), key -> new Counter());
+    }
+
+    /**
+     * Registers a gauge whose values are read at scrape time, one sample per key of the supplied
+     * map, labelled {@code label}. Registering the same name again replaces the supplier.
+     */
+    public static void gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        Family family = family(name, help, "gauge");
+        family.samples.clear();
+        family.samples.put("", new Gauge(label, values));
+    }
+
+    public static void gauge(String name, String help, Supplier<? extends Number> value) {
+        gauge(name, help, null, () -> Map.of("", value.get()));
+    }
+
+    public static void render(Writer out) throws IOException {
+        StringBuilder text = new StringBuilder(4096);
+        for (Map.Entry<String, Family> entry : new TreeMap<>(FAMILIES).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            text.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> sample : new TreeMap<>(family.samples).entrySet()) {
+                String labels = sample.getKey();
+                switch (sample.getValue()) {
+                    case Histogram histogram -> histogram.render(text, name, labels);
+                    case Counter counter -> line(text, name, labels, counter.count.sum());
+                    case Gauge gauge -> gauge.render(text, name);
+                    default -> throw new IllegalStateException("Unknown sample type");
+                }
+            }
+        }
+        out.write(text.toString());
+    }
+
+    private static Family family(String name, String help, String type) {
+        Family family = FAMILIES.computeIfAbsent(name, key -> new Family(help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type);
+        }
+        return family;
+    }
+
+    private static String labels(String label, String value) {
+        return label == null ? "" : label + "=\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void line(StringBuilder text, String name, String labels, double value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.isNaN(value) ? "NaN" : value > 0 ? "+Inf" : "-Inf";
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private record Family(String help, String type, Map<String, Object> samples) {
+        Family(String help, String type) {
+            this(help, type, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * A latency histogram over {@link #BUCKETS}, recorded in nanoseconds.
+     */
+    public static final class Histogram {
+        private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        public void observeNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            counts[bucket].increment();
+            sumNanos.add(nanos);
+        }
+
+        /**
+         * Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading.
+         */
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        private void render(StringBuilder text, String name, String labels) {
+            String prefix = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += counts[i].sum();
+                line(text, name + "_bucket", prefix + "le=\"" + format(BUCKETS[i]) + "\"", cumulative);
+            }
+            cumulative += counts[BUCKETS.length].sum();
+            line(text, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+            line(text, name + "_sum", labels, sumNanos.sum() / 1e9);
+            line(text, name + "_count", labels, cumulative);
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {}
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+    }
+
+    private record Gauge(String label, Supplier<Map<String, ? extends Number>> values) {
+        void render(StringBuilder text, String name) {
+            Map<String, ? extends Number> current;
+            try {
+                current = values.get();
+            } catch (RuntimeException e) {
+                return;
+            }
+            List<String> keys = new ArrayList<>(current.keySet());
+            keys.sort(null);
+            for (String key : keys) {
+                Number value = current.get(key);
+                if (value != null) {
+                    line(text, name, labels(label, key), value.doubleValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.vectora.server;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides whether this node should receive traffic. It is ready once a warmed index snapshot
+ * with at least one table is published, the last successful refresh is recent enough and, with
+ * admission control enabled, no admission limiter is close to full. Ingest running in this process is reported but does not
+ * on its own make the node unready: published tables stay servable. Asked about one table, the
+ * index check requires that table to be published instead.
+ */
+public final class Readiness {
+
+    private final LuceneService luceneService;
+    private final AdmissionControl admission;
+    private final IngestProgress ingest;
+    private final AppConfig.ReadinessConfig config;
+    private final long maxRefreshAgeMillis;
+
+    public Readiness(LuceneService luceneService, AdmissionControl admission, IngestProgress ingest,
+                     AppConfig config) {
+        this.luceneService = luceneService;
+        this.admission = admission;
+        this.ingest = ingest;
+        this.config = config.readiness();
+        int refreshInterval = config.lucene().refreshIntervalSeconds();
+        if (this.config.maxRefreshAgeSeconds() > 0) {
+            this.maxRefreshAgeMillis = this.config.maxRefreshAgeSeconds() * 1000L;
+        } else {
+            this.maxRefreshAgeMillis = refreshInterval > 0 ? refreshInterval * 3000L : 0;
+        }
+    }
+
+    public Map<String, Object> report() {
+        return report(null);
+    }
+
+    /**
+     * A report with an overall {@code status} ({@code ready} / {@code not_ready}) and one entry
+     * per check. With a {@code table}, readiness is for serving that table.
+     */
+    public Map<String, Object> report(String table) {
+        Map<String, Object> checks = new LinkedHashMap<>();
+        boolean ready = true;
+
+        Map<String, String> tables = tableStates();
+        boolean indexOk;
+        if (table == null || table.isBlank()) {
+            long published = tables.values().stream().filter("ready"::equals).count();
+            indexOk = luceneService.generation() > 0 && published > 0;
+            checks.put("index", check(indexOk, "generation", luceneService.generation(), "tables", published));
+        } else {
+            String state = tables.getOrDefault(table, "unknown");
+            indexOk = "ready".equals(state);
+            checks.put("index", check(indexOk, "generation", luceneService.generation(), "table", table,
+                    "state", state));
+        }
+        ready &= indexOk;
+
+        long age = System.currentTimeMillis() - luceneService.lastRefreshMillis();
+        boolean refreshOk = maxRefreshAgeMillis <= 0 || age <= maxRefreshAgeMillis;
+        checks.put("refresh", check(refreshOk, "age_ms", age, "max_age_ms", maxRefreshAgeMillis));
+        ready &= refreshOk;
+
+        int activeTables = LuceneIndexer.activeTables();
+        Map<String, Object> ingestState = new LinkedHashMap<>();
+        ingestState.put("in_progress", ingest.running() || activeTables > 0);
+        ingestState.put("active_tables", activeTables);
+        if (ingest.error() != null) {
+            ingestState.put("error", ingest.error());
+        }
+        checks.put("ingest", ingestState);
+
+        // Without admission control the limits are never enforced, so in-flight counts above
+        // them do not mean requests are being shed.
+        Map<String, Object> load = new LinkedHashMap<>();
+        load.put("ok", true);
+        boolean loadOk = true;
+        if (admission.enabled()) {
+            for (ConcurrencyLimiter limiter : admission.limiters()) {
+                double utilization = (double) limiter.inFlight() / limiter.limit();
+                load.put(limiter.name(), Math.round(utilization * 100) / 100.0);
+                loadOk &= utilization < config.maxLoad();
+            }
+        } else {
+            load.put("admission", "disabled");
+        }
+        load.put("ok", loadOk);
+        checks.put("load", load);
+        ready &= loadOk;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("status", ready ? "ready" : "not_ready");
+        report.put("checks", checks);
+        report.put("tables", tables);
+        return report;
+    }
+
+    /**
+     * Every known table: {@code ready} once published, otherwise its ingest state.
+     */
+    private Map<String, String> tableStates() {
+        Map<String, String> states = new TreeMap<>();
+        ingest.tables().forEach((name, state) -> states.put(name, state.name().toLowerCase(Locale.ROOT)));
+        for (Map<String, Object> entry : luceneService.catalog().tables()) {
+            Object name = entry.get("table");
+            if (name != null) {
+                states.put(name.toString(), "ready");
+            }
+        }
+        return states;
+    }
+
+    public boolean ready() {
+        return "ready".equals(report().get("status"));
+    }
+
+    private static Map<String, Object> check(boolean ok, Object... details) {
+        Map<String, Object> check = new LinkedHashMap<>();
+        check.put("ok", ok);
+        for (int i = 0; i + 1 < details.length; i += 2) {
+            check.put(details[i].toString(), details[i + 1]);
+        }
+        return check;
+    }
+}
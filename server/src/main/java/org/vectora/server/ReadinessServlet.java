@@ -0,0 +1,31 @@
+package org.vectora.server;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Readiness probe: 200 with the check report when the node can serve within its latency targets,
+ * 503 otherwise. {@code ?table=name} asks whether one table can be served yet.
+ */
+public class ReadinessServlet extends HttpServlet {
+
+    private final Readiness readiness;
+
+    public ReadinessServlet(Readiness readiness) {
+        this.readiness = readiness;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Map<String, Object> report = readiness.report(req.getParameter("table"));
+        int status = "ready".equals(report.get("status"))
+                ? HttpServletResponse.SC_OK
+                : HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+        resp.setHeader("Cache-Control", "no-store");
+        JsonUtil.writeJson(resp, status, report);
+    }
+}
@@ -0,0 +1,32 @@
+package org.vectora.server;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+
+/**
+ * Records the latency of every HTTP request in {@code http_request_seconds}, labelled with the
+ * name of the servlet that handled it. Requests that go async (MCP streams) are not recorded:
+ * their handler returns long before the exchange completes.
+ */
+public class RequestMetricsFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!request.isAsyncStarted() && request instanceof HttpServletRequest http) {
+                Metrics.histogram("http_request_seconds", "HTTP request latency per servlet",
+                        "servlet", http.getHttpServletMapping().getServletName()).observeSince(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonFactoryBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the rows of one table's result set into Lucene documents. A handler per column is chosen
+ * once from the {@link ResultSetMetaData} type, so integers, doubles, decimals and strings are
+ * read with their typed getters and written straight into the {@code data} JSON and the
+ * {@code content} text; other types go through {@code getObject}. The {@link Document}, its
+ * fields and the text buffers are reused for every row, so a row costs little more than the
+ * values the driver returns and the stored {@code data} and {@code id} strings.
+ *
+ * <p>Long text columns (LOB and long character types, or ones declared wider than the column's
+ * {@link AppConfig.ColumnPolicy#maxStoredBytes()}) are read through
+ * {@link ResultSet#getCharacterStream}. A longer value keeps a cut copy (or none) in {@code data}
+ * and reaches the analyzer as an extra {@code content} value instead of going through the row's
+ * {@code content} text. Columns are read left to right and JDBC only keeps a stream valid until
+ * the next column is read, so only the last column's stream is handed to the analyzer as is;
+ * oversize values of earlier columns are drained first, into a per-column buffer of bounded size
+ * and past that into a temporary file. Whether the driver itself holds a whole value in memory
+ * depends on the driver: MySQL Connector/J reads every row in full. Binary columns and excluded
+ * columns are not read at all.
+ *
+ * <p>When the spec declares the table ({@link AppConfig.TableSchema}), a column is written to
+ * {@code data} only if the spec stores it and to {@code content} only if it indexes it; columns
+ * it does neither with are left out like excluded ones.
+ *
+ * <p>Not thread-safe: each ingest worker converts its own tables with its own {@link Buffers}.
+ * {@link #close} releases the streams and spill files of the last row.
+ */
+final class RowConverter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowConverter.class);
+
+    /**
+     * Scratch space owned by one ingest worker and shared by the tables it converts in turn.
+     */
+    static final class Buffers {
+        private final StringWriter json = new StringWriter(1024);
+        private final StringBuilder content = new StringBuilder(1024);
+        private final StringBuilder id = new StringBuilder(32);
+        private final ContentReader contentReader = new ContentReader(content);
+        private final JsonGenerator generator;
+
+        Buffers(ObjectMapper objectMapper) throws IOException {
+            JsonFactory factory = new JsonFactoryBuilder().rootValueSeparator((String) null).build();
+            this.generator = factory.createGenerator(json).setCodec(objectMapper);
+        }
+    }
+
+    private final Buffers buffers;
+    private final List<Column> columns;
+    private final Column[] keyColumns;
+    private final Column createdAtColumn;
+    private final TimestampParser createdAtParser = new TimestampParser();
+
+    private final StringField idField = new StringField("id", "", Field.Store.YES);
+    private final StoredField dataField = new StoredField("data", "");
+    private final LongPoint createdAtPoint = new LongPoint("created_at_epoch", 0L);
+    private final StoredField createdAtEpochField = new StoredField("created_at_epoch", 0L);
+    private final StoredField createdAtField = new StoredField("created_at", "");
+    private final Document timedDocument = new Document();
+    private final Document untimedDocument = new Document();
+
+    RowConverter(String table, ResultSetMetaData metaData, List<String> primaryKeys,
+                 AppConfig.IngestConfig ingest, Buffers buffers) throws SQLException {
+        this.buffers = buffers;
+        this.columns = new ArrayList<>();
+        Metrics.Counter oversized = Metrics.counter("ingest_values_oversize_total",
+                "Text values whose stored copy was cut or left out at max_stored_bytes", "table", table);
+        List<String> excluded = new ArrayList<>();
+        List<TextField> streamFields = new ArrayList<>();
+        AppConfig.TableSchema schema = ingest.schema(table);
+        Column createdAt = null;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String name = metaData.getColumnLabel(i);
+            if (name == null || name.isBlank()) {
+                name = metaData.getColumnName(i);
+            }
+            boolean isCreatedAt = "created_at".equalsIgnoreCase(name);
+            AppConfig.ColumnPolicy policy = ingest.policy(table, name);
+            boolean stored = schema == null || schema.stores(name);
+            boolean indexed = schema == null || schema.indexes(name);
+            if (!isCreatedAt && !isKey(primaryKeys, name) && (policy.exclude() || !stored && !indexed
+                    || ingest.excludeBinary() && isBinary(metaData.getColumnType(i)))) {
+                excluded.add(name);
+                continue;
+            }
+            Column column = isCreatedAt ? new ObjectColumn(i, name) : column(metaData, i, name, policy, oversized);
+            column.sqlType = metaData.getColumnType(i);
+            column.stored = stored;
+            column.indexed = indexed;
+            columns.add(column);
+            if (column instanceof TextStreamColumn stream && indexed) {
+                streamFields.add(stream.field);
+            }
+            if (isCreatedAt) {
+                createdAt = column;
+            }
+        }
+        if (!excluded.isEmpty()) {
+            LOGGER.info("Table {}: not ingesting columns {}", table, excluded);
+        }
+        if (!columns.isEmpty() && columns.get(columns.size() - 1) instanceof TextStreamColumn last) {
+            last.streamTail = true;
+        }
+        this.createdAtColumn = createdAt;
+        this.keyColumns = new Column[primaryKeys.size()];
+        for (int k = 0; k < keyColumns.length; k++) {
+            keyColumns[k] = find(primaryKeys.get(k));
+            if (keyColumns[k] == null) {
+                throw new SQLException("Primary key column " + primaryKeys.get(k)
+                        + " is not in the result set of " + table);
+            }
+        }
+
+        StringField docType = new StringField("doc_type", "row", Field.Store.YES);
+        StringField tableField = new StringField("table", table, Field.Store.YES);
+        TextField contentField = new TextField("content", buffers.contentReader);
+        for (Document doc : List.of(timedDocument, untimedDocument)) {
+            doc.add(docType);
+            doc.add(tableField);
+            doc.add(idField);
+            doc.add(dataField);
+            doc.add(contentField);
+            streamFields.forEach(doc::add);
+        }
+        timedDocument.add(createdAtPoint);
+        timedDocument.add(createdAtEpochField);
+        timedDocument.add(createdAtField);
+    }
+
+    boolean hasCreatedAt() {
+        return createdAtColumn != null;
+    }
+
+    /**
+     * Converts the current row, or returns {@code null} when a primary-key column is SQL NULL. The
+     * returned document is reused by the next call, so it must be indexed before then.
+     */
+    Document convert(ResultSet rs) throws SQLException, IOException {
+        for (Column column : columns) {
+            column.read(rs);
+        }
+        StringBuilder id = buffers.id;
+        id.setLength(0);
+        for (int k = 0; k < keyColumns.length; k++) {
+            Column key = keyColumns[k];
+            if (key.isNull) {
+                return null;
+            }
+            if (k > 0) {
+                id.append(':');
+            }
+            key.appendId(id);
+        }
+
+        StringBuilder content = buffers.content;
+        content.setLength(0);
+        buffers.json.getBuffer().setLength(0);
+        JsonGenerator json = buffers.generator;
+        json.writeStartObject();
+        for (Column column : columns) {
+            if (column.stored) {
+                json.writeFieldName(column.key);
+                if (column.isNull) {
+                    json.writeNull();
+                } else {
+                    column.writeJson(json);
+                }
+            }
+            if (column.indexed && !column.isNull) {
+                column.appendText(content);
+                content.append(' ');
+            }
+        }
+        json.writeEndObject();
+        json.flush();
+        buffers.contentReader.rewind();
+
+        idField.setStringValue(id.toString());
+        dataField.setStringValue(buffers.json.toString());
+
+        if (!(createdAtColumn instanceof ObjectColumn column) || column.isNull) {
+            return untimedDocument;
+        }
+        long epoch = createdAtParser.toMillis(column.raw);
+        if (epoch == TimestampParser.NONE) {
+            return untimedDocument;
+        }
+        createdAtPoint.setLongValue(epoch);
+        createdAtEpochField.setLongValue(epoch);
+        createdAtField.setStringValue(column.normalized.toString());
+        return timedDocument;
+    }
+
+    /**
+     * The primary-key values of the row converted last, in key order, as the driver returned
+     * them, so they bind as the lower bound of the next query exactly as they were read.
+     */
+    List<Object> lastKey() {
+        List<Object> key = new ArrayList<>(keyColumns.length);
+        for (Column column : keyColumns) {
+            key.add(column.value());
+        }
+        return key;
+    }
+
+    /**
+     * The {@link Types} of the primary-key columns, in key order.
+     */
+    int[] keyTypes() {
+        int[] types = new int[keyColumns.length];
+        for (int k = 0; k < keyColumns.length; k++) {
+            types[k] = keyColumns[k].sqlType;
+        }
+        return types;
+    }
+
+    /**
+     * Characters the long text columns hold on the heap between rows.
+     */
+    int bufferedChars() {
+        int chars = 0;
+        for (Column column : columns) {
+            if (column instanceof TextStreamColumn stream) {
+                chars += stream.bufferedChars();
+            }
+        }
+        return chars;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Column column : columns) {
+            if (column instanceof TextStreamColumn stream) {
+                stream.tail.clear();
+            }
+        }
+    }
+
+    private Column find(String keyName) {
+        for (Column column : columns) {
+            if (column.name.equals(keyName)) {
+                return column;
+            }
+        }
+        for (Column column : columns) {
+            if (column.name.equalsIgnoreCase(keyName)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    private Column column(ResultSetMetaData metaData, int index, String name, AppConfig.ColumnPolicy policy,
+                          Metrics.Counter oversized) throws SQLException {
+        return switch (metaData.getColumnType(index)) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> new LongColumn(index, name);
+            case Types.BIGINT -> metaData.isSigned(index) ? new LongColumn(index, name) : new ObjectColumn(index, name);
+            case Types.DOUBLE -> new DoubleColumn(index, name);
+            case Types.DECIMAL, Types.NUMERIC -> new DecimalColumn(index, name);
+            case Types.CHAR, Types.VARCHAR, Types.NCHAR, Types.NVARCHAR ->
+                    // up to 4 UTF-8 bytes per declared character
+                    (long) metaData.getPrecision(index) * 4 > policy.maxStoredBytes()
+                            ? new TextStreamColumn(index, name, policy, oversized)
+                            : new StringColumn(index, name);
+            case Types.LONGVARCHAR, Types.LONGNVARCHAR, Types.CLOB, Types.NCLOB ->
+                    new TextStreamColumn(index, name, policy, oversized);
+            default -> new ObjectColumn(index, name);
+        };
+    }
+
+    private static boolean isBinary(int type) {
+        return type == Types.BINARY || type == Types.VARBINARY || type == Types.LONGVARBINARY || type == Types.BLOB;
+    }
+
+    private static boolean isKey(List<String> primaryKeys, String name) {
+        for (String key : primaryKeys) {
+            if (key.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One result-set column: reads its value for the current row, then renders it as a JSON value,
+     * as text for {@code content} and as part of the row id. Rendering matches what serializing
+     * the {@code getObject} value would produce.
+     */
+    private abstract static class Column {
+        final int index;
+        final String name;
+        final SerializedString key;
+        int sqlType;
+        boolean stored = true;
+        boolean indexed = true;
+        boolean isNull;
+
+        Column(int index, String name) {
+            this.index = index;
+            this.name = name;
+            this.key = new SerializedString(name);
+        }
+
+        abstract void read(ResultSet rs) throws SQLException, IOException;
+
+        abstract void writeJson(JsonGenerator json) throws IOException;
+
+        abstract void appendText(StringBuilder text);
+
+        abstract Object value();
+
+        void appendId(StringBuilder id) {
+            appendText(id);
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private long value;
+
+        LongColumn(int index, String name) {
+            super(index, name);
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException {
+            value = rs.getLong(index);
+            isNull = rs.wasNull();
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            json.writeNumber(value);
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            text.append(value);
+        }
+
+        @Override
+        Object value() {
+            return value;
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double value;
+
+        DoubleColumn(int index, String name) {
+            super(index, name);
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException {
+            value = rs.getDouble(index);
+            isNull = rs.wasNull();
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            json.writeNumber(value);
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            text.append(value);
+        }
+
+        @Override
+        Object value() {
+            return value;
+        }
+    }
+
+    private static final class DecimalColumn extends Column {
+        private BigDecimal value;
+
+        DecimalColumn(int index, String name) {
+            super(index, name);
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException {
+            value = rs.getBigDecimal(index);
+            isNull = value == null;
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            json.writeNumber(value);
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            text.append(value);
+        }
+
+        @Override
+        Object value() {
+            return value;
+        }
+    }
+
+    private static final class StringColumn extends Column {
+        private String value;
+
+        StringColumn(int index, String name) {
+            super(index, name);
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException {
+            value = rs.getString(index);
+            isNull = value == null;
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            json.writeString(value);
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            text.append(value);
+        }
+
+        @Override
+        Object value() {
+            return value;
+        }
+    }
+
+    /**
+     * Long text, read as a character stream. Up to {@code maxStoredBytes} of UTF-8 (plus one
+     * character, to tell whether there is more) are buffered and rendered like a
+     * {@link StringColumn}. A longer value is oversize: {@code data} gets the part that fits, or
+     * null with {@code oversize: skip}, and the whole value reaches the analyzer through
+     * {@link #field}, the buffered part followed by the rest. The rest stays in the driver's
+     * stream when this is the last column read ({@link #streamTail}), and is otherwise drained
+     * before the next column is read: into {@link #spill} up to {@link #SPILL_CHARS}, and past
+     * that into a temporary file that is deleted once the analyzer has read it.
+     */
+    private static final class TextStreamColumn extends Column {
+        static final int SPILL_CHARS = 1 << 20;
+
+        final TailReader tail = new TailReader();
+        final TextField field = new TextField("content", tail);
+        private final int maxStoredBytes;
+        private final boolean skipOversize;
+        private final Metrics.Counter oversized;
+        private final char[] head;
+        private char[] spill = new char[0];
+        private int length;
+        private int storedLength;
+        private boolean oversize;
+        boolean streamTail;
+
+        TextStreamColumn(int index, String name, AppConfig.ColumnPolicy policy, Metrics.Counter oversized) {
+            super(index, name);
+            this.maxStoredBytes = policy.maxStoredBytes();
+            this.skipOversize = policy.skipOversize();
+            this.oversized = oversized;
+            this.head = new char[maxStoredBytes + 1];
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException, IOException {
+            tail.clear();
+            Reader reader = rs.getCharacterStream(index);
+            isNull = reader == null;
+            if (isNull) {
+                return;
+            }
+            length = 0;
+            int read;
+            while (length < head.length && (read = reader.read(head, length, head.length - length)) > 0) {
+                length += read;
+            }
+            storedLength = utf8Prefix(head, length, maxStoredBytes);
+            oversize = storedLength < length;
+            if (oversize && stored) {
+                oversized.increment();
+            }
+            if (!oversize || !indexed) {
+                reader.close();
+            } else if (streamTail) {
+                tail.set(head, length, null, 0, reader);
+            } else {
+                try (reader) {
+                    int drained = drain(reader);
+                    tail.set(head, length, spill, drained, drained < SPILL_CHARS ? null : overflow(reader));
+                }
+            }
+        }
+
+        /**
+         * Reads the rest of {@code reader} into {@link #spill}, which grows as needed up to
+         * {@link #SPILL_CHARS} and is reused for later rows, and returns the number of characters
+         * read. Reaching the cap leaves the remainder in {@code reader}.
+         */
+        private int drain(Reader reader) throws IOException {
+            int count = 0;
+            int read;
+            while (count < SPILL_CHARS) {
+                if (count == spill.length) {
+                    spill = Arrays.copyOf(spill, Math.min(SPILL_CHARS, Math.max(head.length, spill.length * 2)));
+                }
+                if ((read = reader.read(spill, count, spill.length - count)) < 0) {
+                    break;
+                }
+                count += read;
+            }
+            return count;
+        }
+
+        /**
+         * Copies the rest of {@code reader} to a temporary file and returns a reader over it that
+         * deletes the file when closed.
+         */
+        private static Reader overflow(Reader reader) throws IOException {
+            Path file = Files.createTempFile("ingest-spill-", ".txt");
+            try {
+                try (Writer out = new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8)) {
+                    reader.transferTo(out);
+                }
+                return new BufferedReader(Channels.newReader(FileChannel.open(file,
+                        StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE), StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+        }
+
+        int bufferedChars() {
+            return head.length + spill.length;
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            if (!oversize) {
+                json.writeString(head, 0, length);
+            } else if (skipOversize) {
+                json.writeNull();
+            } else {
+                json.writeString(head, 0, storedLength);
+            }
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            if (!oversize) {
+                text.append(head, 0, length);
+            }
+        }
+
+        @Override
+        void appendId(StringBuilder id) {
+            id.append(head, 0, length);
+        }
+
+        @Override
+        Object value() {
+            return new String(head, 0, length);
+        }
+
+        /**
+         * The number of leading characters whose UTF-8 encoding fits in {@code maxBytes}, never
+         * splitting a surrogate pair.
+         */
+        private static int utf8Prefix(char[] chars, int length, int maxBytes) {
+            int bytes = 0;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                boolean pair = Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1]);
+                int size = c < 0x80 ? 1 : c < 0x800 ? 2 : pair ? 4 : 3;
+                if (bytes + size > maxBytes) {
+                    return i;
+                }
+                bytes += size;
+                if (pair) {
+                    i++;
+                }
+            }
+            return length;
+        }
+    }
+
+    /**
+     * Any other type, read with {@code getObject} and normalized like temporal values are for
+     * display: ISO-8601 strings.
+     */
+    private static final class ObjectColumn extends Column {
+        private Object raw;
+        private Object normalized;
+
+        ObjectColumn(int index, String name) {
+            super(index, name);
+        }
+
+        @Override
+        void read(ResultSet rs) throws SQLException {
+            raw = rs.getObject(index);
+            normalized = normalizeValue(raw);
+            isNull = normalized == null;
+        }
+
+        @Override
+        void writeJson(JsonGenerator json) throws IOException {
+            json.writeObject(normalized);
+        }
+
+        @Override
+        void appendText(StringBuilder text) {
+            text.append(normalized);
+        }
+
+        @Override
+        void appendId(StringBuilder id) {
+            id.append(raw);
+        }
+
+        @Override
+        Object value() {
+            return raw;
+        }
+    }
+
+    /**
+     * A {@link Reader} over the reused {@code content} buffer, rewound for each row, so the
+     * analyzer tokenizes the row text without it being copied into a {@link String}.
+     */
+    private static final class ContentReader extends Reader {
+        private final StringBuilder text;
+        private int position;
+
+        ContentReader(StringBuilder text) {
+            this.text = text;
+        }
+
+        void rewind() {
+            position = 0;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            // Reused across rows; Lucene closes the reader after every document.
+        }
+    }
+
+    /**
+     * The value of an oversize {@link TextStreamColumn} for the analyzer: the buffered head, then
+     * the drained part, then the rest of the driver's stream, which is closed when Lucene closes
+     * the reader after the document. Empty for rows where the column's value fit.
+     */
+    private static final class TailReader extends Reader {
+        private char[] head;
+        private int headLength;
+        private char[] spill;
+        private int spillLength;
+        private int position;
+        private Reader rest;
+
+        void set(char[] head, int headLength, char[] spill, int spillLength, Reader rest) {
+            this.head = head;
+            this.headLength = headLength;
+            this.spill = spill;
+            this.spillLength = spillLength;
+            this.position = 0;
+            this.rest = rest;
+        }
+
+        void clear() throws IOException {
+            close();
+            headLength = 0;
+            spillLength = 0;
+            position = 0;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (position < headLength) {
+                int count = Math.min(length, headLength - position);
+                System.arraycopy(head, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+            if (position < headLength + spillLength) {
+                int start = position - headLength;
+                int count = Math.min(length, spillLength - start);
+                System.arraycopy(spill, start, buffer, offset, count);
+                position += count;
+                return count;
+            }
+            return rest == null ? -1 : rest.read(buffer, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (rest != null) {
+                Reader reader = rest;
+                rest = null;
+                reader.close();
+            }
+        }
+    }
+
+    static Object normalizeValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof java.time.LocalDateTime
+                || value instanceof java.time.LocalDate
+                || value instanceof java.time.LocalTime
+                || value instanceof java.time.OffsetDateTime
+                || value instanceof java.time.OffsetTime
+                || value instanceof java.time.Instant) {
+            return value.toString();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant().toString();
+        }
+        if (value instanceof java.sql.Date sqlDate) {
+            return new java.util.Date(sqlDate.getTime()).toInstant().toString();
+        }
+        if (value instanceof java.sql.Time sqlTime) {
+            return new java.util.Date(sqlTime.getTime()).toInstant().toString();
+        }
+        if (value instanceof java.util.Date date) {
+            return date.toInstant().toString();
+        }
+        return value;
+    }
+}
@@ -12,36 +12,62 @@ import java.util.Optional;
 public class RowLookupServlet extends HttpServlet {
 
     private final LuceneService luceneService;
+    private final AdmissionControl admission;
+    private final ConcurrencyLimiter limiter;
 
-    public RowLookupServlet(LuceneService luceneService) {
+    public RowLookupServlet(LuceneService luceneService, AdmissionControl admission) {
         this.luceneService = luceneService;
+        this.admission = admission;
+        this.limiter = admission.limiter(AdmissionControl.HTTP_LOOKUP);
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long permit = limiter.tryAcquire();
+        if (permit == ConcurrencyLimiter.REJECTED) {
+            admission.reject(resp, limiter);
+            return;
+        }
+        try {
+            handle(req, resp);
+        } finally {
+            limiter.release(permit);
+        }
+    }
+
+    private void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String path = req.getPathInfo();
         if (path == null || path.isBlank() || "/".equals(path)) {
             notFound(resp);
             return;
         }
-        String[] parts = path.split("/");
-        if (parts.length < 3) {
+        // /{table}/{id}; ids of file sources are relative paths and keep their slashes
+        int slash = path.indexOf('/', 1);
+        if (slash < 0) {
             notFound(resp);
             return;
         }
-        String table = parts[1];
-        String id = parts[2];
+        String table = path.substring(1, slash);
+        String id = path.substring(slash + 1);
         if (table.isBlank() || id.isBlank()) {
             notFound(resp);
             return;
         }
 
+        Optional<String> version = luceneService.lookupVersion(table, id);
+        if (version.isEmpty()) {
+            notFound(resp);
+            return;
+        }
+        if (HttpCaching.notModified(req, resp, HttpCaching.etag(table, id, version.get(), req.getParameter("pretty")))) {
+            return;
+        }
         Optional<Map<String, Object>> row = luceneService.lookup(table, id);
         if (row.isEmpty()) {
             notFound(resp);
             return;
         }
-        JsonUtil.writePrettyJson(resp, HttpServletResponse.SC_OK, row.get());
+        JsonUtil.writeJson(req, resp, HttpServletResponse.SC_OK, row.get());
     }
 
     private void notFound(HttpServletResponse resp) throws IOException {
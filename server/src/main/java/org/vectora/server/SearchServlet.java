@@ -11,13 +11,30 @@ import java.util.Map;
 public class SearchServlet extends HttpServlet {
 
     private final LuceneService luceneService;
+    private final AdmissionControl admission;
+    private final ConcurrencyLimiter limiter;
 
-    public SearchServlet(LuceneService luceneService) {
+    public SearchServlet(LuceneService luceneService, AdmissionControl admission) {
         this.luceneService = luceneService;
+        this.admission = admission;
+        this.limiter = admission.limiter(AdmissionControl.HTTP_SEARCH);
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long permit = limiter.tryAcquire();
+        if (permit == ConcurrencyLimiter.REJECTED) {
+            admission.reject(resp, limiter);
+            return;
+        }
+        try {
+            handle(req, resp);
+        } finally {
+            limiter.release(permit);
+        }
+    }
+
+    private void handle(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String query = value(req.getParameter("query"));
         if (query.isBlank()) {
             query = value(req.getParameter("q"));
@@ -30,9 +47,15 @@ public class SearchServlet extends HttpServlet {
         try {
             Long createdFrom = LuceneService.parseTime(createdFromRaw);
             Long createdTo = LuceneService.parseTime(createdToRaw);
+            String etag = HttpCaching.etag(luceneService.indexVersion(table), query, table,
+                    String.valueOf(createdFrom), String.valueOf(createdTo), String.valueOf(limit), req.getParameter("pretty"));
+            if (HttpCaching.notModified(req, resp, etag)) {
+                return;
+            }
             Map<String, Object> payload = luceneService.search(query, table, createdFrom, createdTo, limit);
-            JsonUtil.writePrettyJson(resp, HttpServletResponse.SC_OK, payload);
+            JsonUtil.writeJson(req, resp, HttpServletResponse.SC_OK, payload);
         } catch (Exception e) {
+            resp.setHeader("ETag", null);
             Map<String, Object> payload = new LinkedHashMap<>();
             payload.put("error", "Search failed");
             payload.put("message", e.getMessage());
@@ -0,0 +1,269 @@
+package org.vectora.server;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Converts timestamps to epoch milliseconds without exceptions or intermediate objects, for
+ * {@code created_at} values during ingest and for the {@code created_at_from}/{@code _to}
+ * arguments of searches. JDBC and {@code java.time} values are converted directly; text is read
+ * in a single pass and may be epoch milliseconds or an ISO-8601 date or date-time:
+ * {@code 2024-03-01}, {@code 2024-03-01T10:15}, {@code 2024-03-01 10:15:30.250},
+ * {@code 2024-03-01T10:15:30+02:00}. Date-times without an offset, and dates, are read as UTC,
+ * matching the {@code serverTimezone=UTC} the ingest connects with.
+ *
+ * <p>An instance remembers whether the column it parses holds epoch numbers or ISO text and tries
+ * that format first for the next value.
+ */
+final class TimestampParser {
+
+    /** Returned when a value is not a timestamp. */
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private boolean epochText;
+
+    /**
+     * Converts one value of this parser's column, remembering the text format it was in.
+     */
+    long toMillis(Object value) {
+        if (!(value instanceof CharSequence text)) {
+            return convert(value);
+        }
+        int start = skipWhitespace(text);
+        int end = trimEnd(text, start);
+        if (start == end) {
+            return NONE;
+        }
+        long millis = epochText ? parseEpoch(text, start, end) : parseIso(text, start, end);
+        if (millis != NONE) {
+            return millis;
+        }
+        millis = epochText ? parseIso(text, start, end) : parseEpoch(text, start, end);
+        if (millis != NONE) {
+            epochText = !epochText;
+        }
+        return millis;
+    }
+
+    /**
+     * Converts a JDBC, {@code java.time} or numeric value directly, and anything else by its text.
+     */
+    static long convert(Object value) {
+        return switch (value) {
+            case null -> NONE;
+            case java.util.Date date -> date.getTime();
+            case Instant instant -> instant.toEpochMilli();
+            case OffsetDateTime dateTime -> dateTime.toInstant().toEpochMilli();
+            case ZonedDateTime dateTime -> dateTime.toInstant().toEpochMilli();
+            case LocalDateTime dateTime ->
+                    dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+            case LocalDate date -> date.toEpochDay() * MILLIS_PER_DAY;
+            case Long number -> number;
+            case Integer number -> number.longValue();
+            case CharSequence text -> parse(text);
+            default -> parse(value.toString());
+        };
+    }
+
+    /**
+     * Parses epoch milliseconds or an ISO-8601 date or date-time, ignoring surrounding whitespace.
+     */
+    static long parse(CharSequence text) {
+        if (text == null) {
+            return NONE;
+        }
+        int start = skipWhitespace(text);
+        int end = trimEnd(text, start);
+        if (start == end) {
+            return NONE;
+        }
+        long millis = parseIso(text, start, end);
+        return millis != NONE ? millis : parseEpoch(text, start, end);
+    }
+
+    private static long parseEpoch(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+        if (i == end) {
+            return NONE;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NONE;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return NONE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * {@code yyyy-MM-dd}, optionally followed by {@code T} or a space, {@code HH:mm}, optional
+     * {@code :ss}, optional fraction of up to nine digits and an optional offset ({@code Z},
+     * {@code ±HH}, {@code ±HHmm}, {@code ±HH:mm} or {@code ±HH:mm:ss}).
+     */
+    private static long parseIso(CharSequence text, int start, int end) {
+        if (end - start < 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            return NONE;
+        }
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return NONE;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        int i = start + 10;
+        if (i == end) {
+            return millis;
+        }
+
+        char separator = text.charAt(i);
+        boolean timeSeparator = separator == 'T' || separator == 't' || separator == ' ';
+        if (!timeSeparator || end - i < 6 || text.charAt(i + 3) != ':') {
+            return NONE;
+        }
+        int hour = digits(text, i + 1, 2);
+        int minute = digits(text, i + 4, 2);
+        if (hour < 0 || hour > 24 || minute < 0 || minute > 59) {
+            return NONE;
+        }
+        long dayStart = millis;
+        millis += hour * 3_600_000L + minute * 60_000L;
+        i += 6;
+        if (i < end && text.charAt(i) == ':') {
+            int second = i + 3 <= end ? digits(text, i + 1, 2) : -1;
+            if (second < 0 || second > 59) {
+                return NONE;
+            }
+            millis += second * 1000L;
+            i += 3;
+            if (i < end && text.charAt(i) == '.') {
+                int fractionStart = ++i;
+                int fraction = 0;
+                while (i < end && i - fractionStart < 9 && isDigit(text.charAt(i))) {
+                    if (i - fractionStart < 3) {
+                        fraction = fraction * 10 + (text.charAt(i) - '0');
+                    }
+                    i++;
+                }
+                for (int d = i - fractionStart; d < 3; d++) {
+                    fraction *= 10;
+                }
+                millis += fraction;
+            }
+        }
+        if (hour == 24 && millis != dayStart + MILLIS_PER_DAY) {
+            return NONE;
+        }
+        if (i == end) {
+            return millis;
+        }
+
+        int offsetSeconds = offset(text, i, end);
+        return offsetSeconds == Integer.MIN_VALUE ? NONE : millis - offsetSeconds * 1000L;
+    }
+
+    /**
+     * The offset in seconds starting at {@code i} and running to {@code end}, or
+     * {@link Integer#MIN_VALUE} when it is malformed.
+     */
+    private static int offset(CharSequence text, int i, int end) {
+        char sign = text.charAt(i);
+        if (sign == 'Z' || sign == 'z') {
+            return i + 1 == end ? 0 : Integer.MIN_VALUE;
+        }
+        if ((sign != '+' && sign != '-') || end - i < 3) {
+            return Integer.MIN_VALUE;
+        }
+        int hours = digits(text, i + 1, 2);
+        int minutes = 0;
+        int seconds = 0;
+        int next = i + 3;
+        if (next < end) {
+            boolean colon = text.charAt(next) == ':';
+            int pos = colon ? next + 1 : next;
+            minutes = pos + 2 <= end ? digits(text, pos, 2) : -1;
+            next = pos + 2;
+            if (colon && next < end && text.charAt(next) == ':') {
+                seconds = next + 3 <= end ? digits(text, next + 1, 2) : -1;
+                next += 3;
+            }
+        }
+        if (next != end || hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+            return Integer.MIN_VALUE;
+        }
+        int total = hours * 3600 + minutes * 60 + seconds;
+        return sign == '-' ? -total : total;
+    }
+
+    /**
+     * The non-negative number in {@code count} digits at {@code start}, or -1.
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    private static int skipWhitespace(CharSequence text) {
+        int i = 0;
+        while (i < text.length() && text.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int trimEnd(CharSequence text, int start) {
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
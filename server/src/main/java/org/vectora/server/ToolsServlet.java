@@ -10,36 +10,33 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Serves the tool catalog. The body is serialized once per index snapshot and reused, with an
+ * ETag so polling clients get a 304 until the catalog changes.
+ */
 public class ToolsServlet extends HttpServlet {
 
     private final LuceneService luceneService;
+    private volatile CachedBody cached;
 
     public ToolsServlet(LuceneService luceneService) {
         this.luceneService = luceneService;
     }
 
+    private record CachedBody(long generation, byte[] body, String etag) {}
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
-            List<Map<String, Object>> tables = luceneService.listTables();
-            List<Map<String, Object>> tools = new ArrayList<>();
-            for (Map<String, Object> table : tables) {
-                String tableName = value(table.get("table"));
-                if (tableName.isBlank()) {
-                    continue;
-                }
-                Map<String, Object> tool = new LinkedHashMap<>();
-                tool.put("table", tableName);
-                Map<String, Object> endpoints = new LinkedHashMap<>();
-                endpoints.put("search", "/search?table=" + tableName);
-                endpoints.put("lookup", "/" + tableName + "/{id}");
-                tool.put("endpoints", endpoints);
-                tools.add(tool);
+            CachedBody body = body(luceneService.catalog());
+            if (HttpCaching.notModified(req, resp, body.etag())) {
+                return;
             }
-
-            Map<String, Object> payload = new LinkedHashMap<>();
-            payload.put("tools", tools);
-            JsonUtil.writePrettyJson(resp, HttpServletResponse.SC_OK, payload);
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setContentLength(body.body().length);
+            resp.getOutputStream().write(body.body());
         } catch (Exception e) {
             Map<String, Object> payload = new LinkedHashMap<>();
             payload.put("error", "Failed to list tools");
@@ -48,14 +45,35 @@ public class ToolsServlet extends HttpServlet {
         }
     }
 
-    private String value(Object obj) {
-        return obj == null ? "" : obj.toString();
+    private CachedBody body(LuceneService.TableCatalog catalog) throws IOException {
+        CachedBody body = cached;
+        if (body != null && body.generation() == catalog.generation()) {
+            return body;
+        }
+        List<Map<String, Object>> tools = new ArrayList<>();
+        for (Map<String, Object> table : catalog.tables()) {
+            String tableName = value(table.get("table"));
+            if (tableName.isBlank()) {
+                continue;
+            }
+            Map<String, Object> tool = new LinkedHashMap<>();
+            tool.put("table", tableName);
+            Map<String, Object> endpoints = new LinkedHashMap<>();
+            endpoints.put("search", "/search?table=" + tableName);
+            endpoints.put("lookup", "/" + tableName + "/{id}");
+            tool.put("endpoints", endpoints);
+            tools.add(tool);
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("tools", tools);
+        byte[] bytes = JsonUtil.MAPPER.writerWithDefaultPrettyPrinter().writeValueAsBytes(payload);
+        body = new CachedBody(catalog.generation(), bytes, HttpCaching.etag(bytes));
+        cached = body;
+        return body;
     }
 
-    private boolean booleanValue(Object obj) {
-        if (obj instanceof Boolean bool) {
-            return bool;
-        }
-        return obj != null && "true".equalsIgnoreCase(obj.toString());
+    private String value(Object obj) {
+        return obj == null ? "" : obj.toString();
     }
 }
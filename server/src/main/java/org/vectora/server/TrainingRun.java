@@ -0,0 +1,126 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The workload behind {@code --train}: drives a started server over real HTTP through health,
+ * tool discovery, a search, a row lookup and an MCP tool call, so the JVM loads and links the
+ * classes every request path needs. Run it under {@code -XX:AOTCacheOutput} (JDK 25) or
+ * {@code -XX:ArchiveClassesAtExit} (AppCDS) to record them; see {@code scripts/aot-train.sh}.
+ */
+final class TrainingRun {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrainingRun.class);
+    private static final int ROUNDS = 3;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final AppConfig config;
+
+    TrainingRun(String baseUrl, AppConfig config) {
+        this.baseUrl = baseUrl;
+        this.config = config;
+    }
+
+    void run(LuceneService luceneService) throws Exception {
+        long start = System.nanoTime();
+        String query = config.lucene().warmup().queries().isEmpty()
+                ? ""
+                : config.lucene().warmup().queries().get(0).query();
+        boolean mcp = config.mcp().transports().contains("streamable") && config.mcp().stateless();
+        for (int round = 0; round < ROUNDS; round++) {
+            get("/health");
+            get("/health/ready");
+            get("/tools");
+            get("/metrics");
+            for (Map<String, Object> table : luceneService.listTables()) {
+                String name = String.valueOf(table.get("table"));
+                String body = get("/search?table=" + encode(name) + "&query=" + encode(query) + "&limit=5");
+                String id = firstId(body);
+                if (id != null) {
+                    get("/" + encode(name) + "/" + encode(id));
+                } else if (round == 0) {
+                    LOGGER.warn("Training search of table {} returned no rows; its lookups are not trained", name);
+                }
+                if (mcp) {
+                    callTool(McpTools.searchToolName(name), Map.of("query", query, "limit", 5));
+                    if (id != null) {
+                        callTool(McpTools.lookupToolName(name), Map.of("id", id));
+                    }
+                }
+            }
+            get("/search?query=" + encode(query));
+        }
+        LOGGER.info("Training run finished in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Sends a GET accepting gzip, as real clients do, and returns the decoded body.
+     */
+    private String get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 500 && response.statusCode() != 503) {
+            LOGGER.warn("Training request {} returned {}", path, response.statusCode());
+        }
+        byte[] body = response.body();
+        if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+            try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = input.readAllBytes();
+            }
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private void callTool(String tool, Map<String, Object> arguments) throws Exception {
+        String body = JsonUtil.MAPPER.writeValueAsString(Map.of(
+                "jsonrpc", "2.0",
+                "id", 1,
+                "method", "tools/call",
+                "params", Map.of("name", tool, "arguments", arguments)));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/mcp"))
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json, text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static String firstId(String searchBody) {
+        try {
+            Map<String, Object> payload = JsonUtil.MAPPER.readValue(searchBody, new TypeReference<>() {});
+            if (payload.get("results") instanceof List<?> results && !results.isEmpty()
+                    && results.get(0) instanceof Map<?, ?> row && row.get("id") != null) {
+                return row.get("id").toString();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Unreadable search response during training: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
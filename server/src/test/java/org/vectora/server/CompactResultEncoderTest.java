@@ -0,0 +1,126 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactResultEncoderTest {
+
+    private static final CompactResultEncoder.Options UNBOUNDED = new CompactResultEncoder.Options(1 << 20, 1000);
+
+    @Test
+    void nextCursorResumesAfterLastRow() throws Exception {
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", 10L, 20L, 3, 0);
+        JsonNode page = encode(response(100, 0, rows(3)), request, UNBOUNDED);
+
+        assertEquals(0, page.get("offset").asInt());
+        assertEquals(3, page.get("returned").asInt());
+        LuceneService.SearchRequest next = CompactResultEncoder.decodeCursor(page.get("next_cursor").asText());
+        assertEquals(new LuceneService.SearchRequest("q", "orders", 10L, 20L, 3, 3), next);
+    }
+
+    @Test
+    void labelsPageWithClampedOffset() throws Exception {
+        // Asked for 9990, but the service served the last full page below the window.
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", null, null, 50, 9990);
+        JsonNode page = encode(response(20_000, 9950, rows(50)), request, UNBOUNDED);
+
+        assertEquals(9950, page.get("offset").asInt());
+        assertTrue(page.get("next_cursor").isNull());
+    }
+
+    @Test
+    void nextCursorStaysInsideWindow() throws Exception {
+        List<Map<String, Object>> results = rows(100);
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", null, null, 100, 9900);
+        int rowBytes = "[\"r000\",\"v\"]".length() + 1;
+        JsonNode page = encode(response(20_000, 9900, results), request,
+                new CompactResultEncoder.Options(rowBytes * 40, 1000));
+
+        assertEquals(40, page.get("returned").asInt());
+        LuceneService.SearchRequest next = CompactResultEncoder.decodeCursor(page.get("next_cursor").asText());
+        assertEquals(9940, next.offset());
+        assertEquals(60, next.limit());
+        assertTrue(next.offset() + next.limit() <= LuceneService.MAX_WINDOW);
+    }
+
+    @Test
+    void noCursorOnceWindowIsExhausted() throws Exception {
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", null, null, 10, 9990);
+        JsonNode page = encode(response(20_000, 9990, rows(10)), request, UNBOUNDED);
+
+        assertTrue(page.get("next_cursor").isNull());
+    }
+
+    @Test
+    void headerOnlyNamesColumnsOfEmittedRows() throws Exception {
+        List<Map<String, Object>> results = List.of(
+                result("1", Map.of("a", "x")),
+                result("2", Map.of("b", "y".repeat(500))));
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", null, null, 2, 0);
+        JsonNode page = encode(response(2, 0, results), request, new CompactResultEncoder.Options(64, 1000));
+
+        assertEquals(1, page.get("returned").asInt());
+        assertEquals("[\"_id\",\"a\"]", page.get("columns").toString());
+        assertEquals("[[\"1\",\"x\"]]", page.get("rows").toString());
+    }
+
+    @Test
+    void newColumnsPadEarlierRows() throws Exception {
+        List<Map<String, Object>> results = List.of(
+                result("1", Map.of("a", "x")),
+                result("2", Map.of("b", "y")));
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", null, null, null, 2, 0);
+        JsonNode page = encode(response(2, 0, results), request, UNBOUNDED);
+
+        assertEquals("[\"_table\",\"_id\",\"a\",\"b\"]", page.get("columns").toString());
+        assertEquals("[[\"orders\",\"1\",\"x\",null],[\"orders\",\"2\",null,\"y\"]]", page.get("rows").toString());
+    }
+
+    @Test
+    void longValuesAreNotCutInsideSurrogatePairs() throws Exception {
+        List<Map<String, Object>> results = List.of(result("1", Map.of("a", "ab\uD83D\uDE00cd")));
+        LuceneService.SearchRequest request = new LuceneService.SearchRequest("q", "orders", null, null, 1, 0);
+        JsonNode page = encode(response(1, 0, results), request, new CompactResultEncoder.Options(1000, 3));
+
+        assertEquals("ab\u2026", page.get("rows").get(0).get(1).asText());
+    }
+
+    private static JsonNode encode(Map<String, Object> response, LuceneService.SearchRequest request,
+                                   CompactResultEncoder.Options options) throws Exception {
+        return JsonUtil.MAPPER.readTree(CompactResultEncoder.encode(response, request, options));
+    }
+
+    private static Map<String, Object> response(long count, int offset, List<Map<String, Object>> results) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("count", count);
+        if (offset > 0) {
+            response.put("offset", offset);
+        }
+        response.put("results", results);
+        return response;
+    }
+
+    private static List<Map<String, Object>> rows(int count) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(result(String.format("r%03d", i), Map.of("c", "v")));
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> result(String id, Map<String, Object> data) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("table", "orders");
+        result.put("id", id);
+        result.put("data", data);
+        return result;
+    }
+}
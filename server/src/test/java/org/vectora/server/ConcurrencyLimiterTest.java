@@ -0,0 +1,172 @@
+package org.vectora.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000 * MILLIS);
+
+    @Test
+    void rejectsOverLimit() {
+        ConcurrencyLimiter limiter = limiter(true, 2, 1, 10, List.of());
+
+        long first = limiter.tryAcquire();
+        long second = limiter.tryAcquire();
+        assertNotEquals(ConcurrencyLimiter.REJECTED, first);
+        assertNotEquals(ConcurrencyLimiter.REJECTED, second);
+        assertEquals(ConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+        assertEquals(1, limiter.rejected());
+
+        limiter.release(first);
+        assertNotEquals(ConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+    }
+
+    @Test
+    void disabledNeverRejects() {
+        ConcurrencyLimiter limiter = limiter(false, 1, 1, 1, List.of());
+
+        for (int i = 0; i < 5; i++) {
+            assertNotEquals(ConcurrencyLimiter.REJECTED, limiter.tryAcquire());
+        }
+        assertEquals(5, limiter.inFlight());
+        assertEquals(0, limiter.rejected());
+    }
+
+    @Test
+    void yieldsToSaturatedLimiter() {
+        ConcurrencyLimiter lookup = limiter(true, 1, 1, 10, List.of());
+        ConcurrencyLimiter search = limiter(true, 10, 1, 10, List.of(lookup));
+
+        long held = lookup.tryAcquire();
+        assertEquals(ConcurrencyLimiter.REJECTED, search.tryAcquire());
+
+        lookup.release(held);
+        assertNotEquals(ConcurrencyLimiter.REJECTED, search.tryAcquire());
+    }
+
+    @Test
+    void slowSamplesNearLimitCutLimitMultiplicatively() {
+        ConcurrencyLimiter limiter = limiter(true, 20, 1, 40, List.of());
+        warm(limiter);
+        long[] held = hold(limiter, 17);
+
+        limiter.release(sample(limiter, 1000));
+        assertEquals(18, limiter.limit());
+
+        // At most one cut per second, however many slow samples arrive.
+        limiter.release(sample(limiter, 1000));
+        assertEquals(18, limiter.limit());
+        clock.addAndGet(1000 * MILLIS);
+        limiter.release(sample(limiter, 1000));
+        assertEquals(16, limiter.limit());
+        release(limiter, held);
+    }
+
+    @Test
+    void slowSamplesAtLowConcurrencyKeepLimit() {
+        ConcurrencyLimiter limiter = limiter(true, 20, 2, 200, List.of());
+        warm(limiter);
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(1000 * MILLIS);
+            limiter.release(sample(limiter, 1000));
+        }
+        assertEquals(20, limiter.limit());
+    }
+
+    @Test
+    void bimodalLatencyMixKeepsLimit() {
+        ConcurrencyLimiter limiter = limiter(true, 20, 2, 200, List.of());
+
+        // Cheap term lookups and expensive wildcard queries, a few in flight at a time.
+        long[] held = hold(limiter, 2);
+        for (int i = 0; i < 2000; i++) {
+            clock.addAndGet(10 * MILLIS);
+            limiter.release(sample(limiter, i % 3 == 0 ? 80 : 2));
+        }
+        assertEquals(20, limiter.limit());
+        release(limiter, held);
+    }
+
+    @Test
+    void busyFastSamplesGrowLimitAdditively() {
+        ConcurrencyLimiter limiter = limiter(true, 4, 1, 5, List.of());
+        long[] held = new long[4];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = sample(limiter, 10);
+        }
+
+        // A limit's worth of completions at steady latency while the limiter stays full.
+        for (int i = 0; i < held.length; i++) {
+            limiter.release(held[i]);
+            held[i] = sample(limiter, 10);
+        }
+        assertEquals(5, limiter.limit());
+
+        for (int i = 0; i < 20; i++) {
+            limiter.release(held[i % held.length]);
+            held[i % held.length] = sample(limiter, 10);
+        }
+        assertEquals(5, limiter.limit());
+    }
+
+    @Test
+    void neverDropsBelowMinimum() {
+        ConcurrencyLimiter limiter = limiter(true, 3, 2, 10, List.of());
+        warm(limiter);
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(1000 * MILLIS);
+            long[] held = hold(limiter, limiter.limit() - 1);
+            limiter.release(sample(limiter, 1000));
+            release(limiter, held);
+        }
+        assertEquals(2, limiter.limit());
+    }
+
+    /**
+     * Settles both latency averages at 10ms with one request in flight at a time.
+     */
+    private void warm(ConcurrencyLimiter limiter) {
+        for (int i = 0; i < 50; i++) {
+            clock.addAndGet(10 * MILLIS);
+            limiter.release(sample(limiter, 10));
+        }
+    }
+
+    private long[] hold(ConcurrencyLimiter limiter, int count) {
+        long[] held = new long[count];
+        for (int i = 0; i < count; i++) {
+            held[i] = sample(limiter, 10);
+        }
+        return held;
+    }
+
+    private void release(ConcurrencyLimiter limiter, long[] held) {
+        for (long start : held) {
+            limiter.release(start);
+        }
+    }
+
+    /**
+     * Acquires a slot and returns a start timestamp backdated so the release sees the given latency.
+     */
+    private long sample(ConcurrencyLimiter limiter, long latencyMillis) {
+        long start = limiter.tryAcquire();
+        assertNotEquals(ConcurrencyLimiter.REJECTED, start);
+        return start - latencyMillis * MILLIS;
+    }
+
+    private ConcurrencyLimiter limiter(boolean enabled, int initial, int min, int max,
+                                       List<ConcurrencyLimiter> yieldTo) {
+        return new ConcurrencyLimiter("test",
+                new AppConfig.AdmissionConfig(enabled, initial, min, max, 2.0, 1), yieldTo, clock::get);
+    }
+}
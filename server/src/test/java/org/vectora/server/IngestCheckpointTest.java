@@ -0,0 +1,156 @@
+package org.vectora.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestCheckpointTest {
+
+    @Test
+    void keyValuesKeepTheirClassAndPrecision() throws Exception {
+        Timestamp timestamp = Timestamp.valueOf("2024-03-01 10:15:30.123456789");
+        List<Object> key = Arrays.asList(
+                42L, 7, new BigInteger("18446744073709551615"), new BigDecimal("12345678901234567890.1234500"),
+                0.1 + 0.2, 1.5f, true, "a:b", timestamp, java.sql.Date.valueOf("2024-03-01"),
+                new Time(36_930_250L), LocalDateTime.parse("2024-03-01T10:15:30.5"), LocalDate.parse("2024-03-01"),
+                LocalTime.parse("10:15:30.25"), OffsetDateTime.parse("2024-03-01T10:15:30+02:00"),
+                Instant.parse("2024-03-01T10:15:30.123Z"), UUID.fromString("123e4567-e89b-12d3-a456-426614174000"),
+                null);
+
+        List<Object> decoded = roundTrip(key, null);
+
+        assertEquals(key.size(), decoded.size());
+        assertEquals(42L, decoded.get(0));
+        assertEquals(7L, decoded.get(1));
+        for (int i = 2; i < key.size(); i++) {
+            assertEquals(key.get(i), decoded.get(i), "key part " + i);
+            if (key.get(i) != null) {
+                assertEquals(key.get(i).getClass(), decoded.get(i).getClass(), "key part " + i);
+            }
+        }
+        assertEquals(new BigDecimal("12345678901234567890.1234500").scale(), ((BigDecimal) decoded.get(3)).scale());
+        assertEquals(timestamp.getNanos(), ((Timestamp) decoded.get(8)).getNanos());
+    }
+
+    @Test
+    void binaryKeysKeepTheirBytes() throws Exception {
+        byte[] bytes = {0, 1, (byte) 0xff, (byte) 0x80, 'a'};
+        List<Object> decoded = roundTrip(List.of(bytes), new int[] {Types.VARBINARY});
+
+        assertArrayEquals(bytes, assertInstanceOf(byte[].class, decoded.get(0)));
+    }
+
+    @Test
+    void recordsSqlTypes() {
+        List<Map<String, Object>> encoded = IngestCheckpoint.encodeKey(
+                List.of(new BigDecimal("1.50"), 3L), new int[] {Types.DECIMAL, Types.BIGINT});
+
+        assertEquals("DECIMAL", encoded.get(0).get("type"));
+        assertEquals("decimal", encoded.get(0).get("class"));
+        assertEquals("1.50", encoded.get(0).get("value"));
+        assertEquals("BIGINT", encoded.get(1).get("type"));
+    }
+
+    @Test
+    void resumesAfterCommittedKey() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory()) {
+            IngestCheckpoint checkpoint = IngestCheckpoint.open(directory, "run-1", 0);
+            assertFalse(checkpoint.resumed());
+            checkpoint.tableDone("a", 10);
+            BigDecimal decimal = new BigDecimal("9007199254740993.01");
+            checkpoint.progress("b", List.of(decimal, "x"), new int[] {Types.DECIMAL, Types.VARCHAR}, 500);
+            commit(directory, checkpoint);
+
+            IngestCheckpoint resumed = IngestCheckpoint.open(directory, "run-1", 0);
+            assertTrue(resumed.resumed());
+            assertFalse(resumed.complete());
+            assertEquals(Map.of("a", 10L), resumed.done());
+            assertEquals(List.of(decimal, "x"), resumed.resumeKey("b"));
+            assertEquals(500, resumed.resumeRows("b"));
+            assertNull(resumed.resumeKey("a"));
+            assertEquals(0, resumed.resumeRows("a"));
+
+            // Committing again before any new progress keeps the key and its types.
+            commit(directory, resumed);
+            assertEquals(List.of(decimal, "x"), IngestCheckpoint.open(directory, "run-1", 0).resumeKey("b"));
+        }
+    }
+
+    @Test
+    void otherRunStartsOver() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory()) {
+            IngestCheckpoint checkpoint = IngestCheckpoint.open(directory, "run-1", 0);
+            checkpoint.progress("b", List.of(5L), new int[] {Types.INTEGER}, 5);
+            commit(directory, checkpoint);
+
+            IngestCheckpoint other = IngestCheckpoint.open(directory, "run-2", 0);
+            assertFalse(other.resumed());
+            assertNull(other.resumeKey("b"));
+        }
+    }
+
+    @Test
+    void readsPlainKeysOfEarlierCheckpoints() {
+        assertEquals(List.of(5, "x"), IngestCheckpoint.decodeKey(List.of(5, "x")));
+    }
+
+    @Test
+    void servesOnlyCompleteCommits() throws Exception {
+        try (Directory directory = new ByteBuffersDirectory()) {
+            IngestCheckpoint first = IngestCheckpoint.open(directory, "run-1", 0);
+            first.markComplete();
+            commit(directory, first);
+
+            IngestCheckpoint second = IngestCheckpoint.open(directory, "run-2", 0);
+            second.progress("b", List.of(1L), new int[] {Types.INTEGER}, 1);
+            commit(directory, second);
+
+            assertEquals("complete", IngestCheckpoint.latestComplete(directory).getUserData().get("ingest_state"));
+            assertEquals("run-1", IngestCheckpoint.latestComplete(directory).getUserData().get("ingest_run"));
+        }
+    }
+
+    private static List<Object> roundTrip(List<Object> key, int[] types) throws Exception {
+        String json = JsonUtil.MAPPER.writeValueAsString(IngestCheckpoint.encodeKey(key, types));
+        return IngestCheckpoint.decodeKey(JsonUtil.MAPPER.readValue(json, List.class));
+    }
+
+    private static void commit(Directory directory, IngestCheckpoint checkpoint) throws Exception {
+        IndexWriterConfig config = new IndexWriterConfig()
+                .setIndexDeletionPolicy(new IngestCheckpoint.DeletionPolicy());
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            Document doc = new Document();
+            doc.add(new StringField("id", "row", Field.Store.NO));
+            writer.addDocument(doc);
+            writer.setLiveCommitData(checkpoint.userData().entrySet());
+            writer.commit();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.vectora.server;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LuceneServiceTest {
+
+    @TempDir
+    Path indexPath;
+
+    @Test
+    void globalVersionJoinsShardsInNameOrder() throws Exception {
+        List<String> tables = List.of("orders", "accounts", "zones", "events", "bills", "users",
+                "carts", "notes", "items", "prices", "tags", "logs");
+        for (String table : tables) {
+            writeShard(table);
+        }
+
+        try (LuceneService service = new LuceneService(indexPath)) {
+            String expected = tables.stream()
+                    .sorted()
+                    .map(service::indexVersion)
+                    .collect(Collectors.joining(","));
+            assertEquals(expected, service.indexVersion(null));
+        }
+    }
+
+    private void writeShard(String table) throws Exception {
+        try (FSDirectory directory = FSDirectory.open(indexPath.resolve(table));
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            Document doc = new Document();
+            doc.add(new StringField("doc_type", "table_meta", Field.Store.YES));
+            doc.add(new StoredField("table", table));
+            writer.addDocument(doc);
+            writer.commit();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.vectora.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowConverterTest {
+
+    private static final int WIDE_CHARS = 3 << 20;
+
+    @Test
+    void wideEarlierColumnIsIndexedInFullWithoutBeingHeld() throws Exception {
+        AppConfig.IngestConfig ingest = new AppConfig.IngestConfig(
+                new AppConfig.ColumnPolicy(64, "truncate", false), false, Map.of(), null, false, 0, Map.of(), List.of());
+        ResultSet rs = resultSet();
+
+        try (Directory directory = new ByteBuffersDirectory();
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()));
+             RowConverter converter = new RowConverter("docs", rs.getMetaData(), List.of("id"), ingest,
+                     new RowConverter.Buffers(new ObjectMapper()))) {
+            Document doc = converter.convert(rs);
+            writer.addDocument(doc);
+            assertTrue(converter.bufferedChars() < WIDE_CHARS / 2, "buffered " + converter.bufferedChars());
+            assertEquals("{\"id\":1,\"body\":\"" + "word ".repeat(12) + "word\",\"title\":\"last\"}",
+                    doc.get("data"));
+
+            writer.commit();
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                assertEquals(1, searcher.count(new TermQuery(new Term("content", "tailmarker"))));
+                assertEquals(1, searcher.count(new TermQuery(new Term("content", "last"))));
+            }
+        }
+    }
+
+    /**
+     * One row: {@code id BIGINT, body CLOB, title VARCHAR(10)}, where {@code body} is
+     * {@link #WIDE_CHARS} characters ending in a marker word.
+     */
+    private static ResultSet resultSet() {
+        String[] names = {"id", "body", "title"};
+        int[] types = {Types.BIGINT, Types.CLOB, Types.VARCHAR};
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (method, args) -> switch (method) {
+            case "getColumnCount" -> names.length;
+            case "getColumnLabel", "getColumnName" -> names[(int) args[0] - 1];
+            case "getColumnType" -> types[(int) args[0] - 1];
+            case "getPrecision" -> 10;
+            case "isSigned" -> true;
+            default -> throw new UnsupportedOperationException(method);
+        });
+        return proxy(ResultSet.class, (method, args) -> switch (method) {
+            case "getMetaData" -> metaData;
+            case "getLong" -> 1L;
+            case "wasNull" -> false;
+            case "getString" -> "last";
+            case "getCharacterStream" -> new WideReader();
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (self, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    /**
+     * "word word ... tailmarker", generated as it is read.
+     */
+    private static final class WideReader extends Reader {
+        private static final String MARKER = " tailmarker";
+        private int position;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == WIDE_CHARS) {
+                return -1;
+            }
+            int count = Math.min(length, WIDE_CHARS - position);
+            for (int i = 0; i < count; i++, position++) {
+                int fromEnd = WIDE_CHARS - position;
+                buffer[offset + i] = fromEnd <= MARKER.length()
+                        ? MARKER.charAt(MARKER.length() - fromEnd)
+                        : "word ".charAt(position % 5);
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
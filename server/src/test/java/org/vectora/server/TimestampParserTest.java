@@ -0,0 +1,92 @@
+package org.vectora.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimestampParserTest {
+
+    @Test
+    void parsesIsoDatesAndDateTimesAsUtc() {
+        assertEquals(utc("2024-03-01T00:00"), TimestampParser.parse("2024-03-01"));
+        assertEquals(utc("2024-03-01T10:15"), TimestampParser.parse("2024-03-01T10:15"));
+        assertEquals(utc("2024-03-01T10:15:30.250"), TimestampParser.parse("2024-03-01 10:15:30.250"));
+        assertEquals(utc("2024-03-01T10:15:30.123"), TimestampParser.parse("2024-03-01t10:15:30.123456789"));
+        assertEquals(utc("2024-03-01T10:15:30.500"), TimestampParser.parse("2024-03-01T10:15:30.5"));
+        assertEquals(utc("2024-02-29T23:59:59"), TimestampParser.parse("2024-02-29T23:59:59"));
+        assertEquals(utc("1969-12-31T23:59:59"), TimestampParser.parse("1969-12-31T23:59:59"));
+    }
+
+    @Test
+    void appliesOffsets() {
+        long local = utc("2024-03-01T10:15:30");
+        for (String offset : new String[] {"+02:00", "-05:30", "+0230", "+02", "Z", "+01:02:03"}) {
+            long expected = local - ZoneOffset.of(offset).getTotalSeconds() * 1000L;
+            assertEquals(expected, TimestampParser.parse("2024-03-01T10:15:30" + offset), offset);
+        }
+        assertEquals(TimestampParser.parse("2024-03-01T10:15:30Z"), TimestampParser.parse("2024-03-01T10:15:30z"));
+    }
+
+    @Test
+    void endOfDayIsMidnightOfTheNextDay() {
+        assertEquals(utc("2024-03-02T00:00"), TimestampParser.parse("2024-03-01T24:00"));
+        assertEquals(utc("2024-03-02T00:00"), TimestampParser.parse("2024-03-01T24:00:00.000"));
+        assertEquals(TimestampParser.NONE, TimestampParser.parse("2024-03-01T24:00:01"));
+    }
+
+    @Test
+    void parsesEpochMillisAndTrimsWhitespace() {
+        assertEquals(1_709_287_200_000L, TimestampParser.parse("1709287200000"));
+        assertEquals(-1000L, TimestampParser.parse("-1000"));
+        assertEquals(42L, TimestampParser.parse("  +42\n"));
+        assertEquals(utc("2024-03-01T00:00"), TimestampParser.parse("\t2024-03-01 "));
+    }
+
+    @Test
+    void rejectsMalformedText() {
+        for (String text : new String[] {
+                "", "   ", "abc", "-", "2024-3-01", "2023-02-29", "2024-13-01", "2024-04-31", "2024-03-01T",
+                "2024-03-01T10", "2024-03-01T10:1", "2024-03-01T10:60", "2024-03-01T10:15:3",
+                "2024-03-01T10:15:30+", "2024-03-01T10:15:30+19:00", "2024-03-01T10:15:30Zx",
+                "2024-03-01X10:15", "99999999999999999999"}) {
+            assertEquals(TimestampParser.NONE, TimestampParser.parse(text), text);
+        }
+        assertEquals(TimestampParser.NONE, TimestampParser.parse(null));
+    }
+
+    @Test
+    void convertsJdbcAndJavaTimeValues() {
+        long expected = utc("2024-03-01T10:15:30.250");
+        Instant instant = Instant.ofEpochMilli(expected);
+        assertEquals(expected, TimestampParser.convert(Timestamp.from(instant)));
+        assertEquals(expected, TimestampParser.convert(instant));
+        assertEquals(expected, TimestampParser.convert(instant.atOffset(ZoneOffset.ofHours(3))));
+        assertEquals(expected, TimestampParser.convert(instant.atZone(ZoneOffset.UTC)));
+        assertEquals(expected, TimestampParser.convert(LocalDateTime.parse("2024-03-01T10:15:30.250")));
+        assertEquals(utc("2024-03-01T00:00"), TimestampParser.convert(LocalDate.parse("2024-03-01")));
+        assertEquals(expected, TimestampParser.convert(expected));
+        assertEquals(7L, TimestampParser.convert(7));
+        assertEquals(TimestampParser.NONE, TimestampParser.convert(null));
+    }
+
+    @Test
+    void remembersColumnFormat() {
+        TimestampParser parser = new TimestampParser();
+        assertEquals(1000L, parser.toMillis("1000"));
+        assertEquals(2000L, parser.toMillis("2000"));
+        assertEquals(utc("2024-03-01T00:00"), parser.toMillis("2024-03-01"));
+        assertEquals(3000L, parser.toMillis(" 3000 "));
+        assertEquals(TimestampParser.NONE, parser.toMillis("not a time"));
+        assertEquals(TimestampParser.NONE, parser.toMillis(""));
+    }
+
+    private static long utc(String localDateTime) {
+        return LocalDateTime.parse(localDateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}